@@ -0,0 +1,143 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+
+package fr.michaelm.jump.plugin.match;
+
+import com.vividsolutions.jump.feature.Feature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * A Map accumulating information about matches between two sets of features.
+ *
+ * A match map orders all possible matches from the best score to the worst
+ * score. For matches returning the same score, ordering is determined by the
+ * {@link Match#compareTo(Match other)} method. Identical matches (see
+ * {@link Match#equals(Object)}) are only kept once.
+ *
+ * Match sets returned by the get* methods are unmodifiable views sorted in
+ * this order. They are not affected by later changes of the map.
+ *
+ * @see MatchMap
+ * @see CompactMatchMap
+ * @author Michaël Michaud
+ */
+public abstract class AbstractMatchMap {
+
+    protected static final SortedSet<Match> EMPTY_SET = new MatchSet(new Match[0], 0, 0);
+
+    /**
+     * Add a match to this map.
+     */
+    public abstract void add(Match m);
+
+    /**
+     * Get the whole match Set, sorted from the best to the worst match.
+     */
+    public abstract SortedSet<Match> getAllMatches();
+
+    /**
+     * Get the set of features matching one or more features.
+     */
+    public abstract Set<Feature> getSourceFeatures();
+
+    /**
+     * Get the set of features being matched by one or more features.
+     */
+    public abstract Set<Feature> getTargetFeatures();
+
+    /**
+     * Get Matches recorded for this source Feature.
+     */
+    public abstract SortedSet<Match> getMatchesForSourceFeature(Feature f);
+
+    /**
+     * Get Matches recorded for this target Feature.
+     */
+    public abstract SortedSet<Match> getMatchesForTargetFeature(Feature f);
+
+    /**
+     * Get Features matching source Feature f.
+     */
+    public List<Feature> getMatchedFeaturesFromSource(Feature f) {
+        List<Feature> list = new ArrayList<>();
+        for (Match m : getMatchesForSourceFeature(f)) {
+            list.add(m.getTarget());
+        }
+        return list;
+    }
+
+    /**
+     * Get Features matching target Feature f.
+     */
+    public List<Feature> getMatchedFeaturesFromTarget(Feature f) {
+        List<Feature> list = new ArrayList<>();
+        for (Match m : getMatchesForTargetFeature(f)) {
+            list.add(m.getSource());
+        }
+        return list;
+    }
+
+    /**
+     * Return Match from source to target. Usually, the result contains 0
+     * or 1 Match, but nothing prevent insertion of several matches per couple
+     * of features.
+     */
+    public SortedSet<Match> getMatches(Feature source, Feature target) {
+        List<Match> list = new ArrayList<>();
+        for (Match m : getMatchesForSourceFeature(source)) {
+            if (m.getTarget() == target) list.add(m);
+        }
+        return new MatchSet(list.toArray(new Match[0]), 0, list.size());
+    }
+
+    /**
+     * Remove all the matches of the source feature of m if singleTarget is
+     * true, and all the matches of the target feature of m if singleSource
+     * is true.
+     */
+    public abstract void removeMatch(Match m, boolean singleSource, boolean singleTarget);
+
+    /**
+     * Remove a match from the map.
+     */
+    public abstract void removeMatch(Match m);
+
+    /**
+     * Filter the map so that each source feature has only one target match
+     * and/or each target feature has only one source match. Matches are
+     * selected from the best to the worst one. Returns this map if both
+     * singleSource and singleTarget are false, and a new map of the same
+     * class otherwise.
+     */
+    public abstract AbstractMatchMap filter(boolean singleSource, boolean singleTarget);
+
+    /**
+     * Remove all the matches.
+     */
+    public abstract void clear();
+
+}
@@ -0,0 +1,458 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match;
+
+import com.vividsolutions.jump.feature.Feature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * A match map storing matches in primitive arrays instead of Match objects.
+ *
+ * Source and target features are replaced by dense indices, and each match
+ * is stored as a (source index, target index, score) triplet. Matches are
+ * appended without any ordering, and are sorted lazily, on the first query,
+ * into a compressed sparse row layout (matches grouped by source) and a
+ * compressed sparse column layout (matches grouped by target), so that
+ * matches of a feature are located in O(1).
+ *
+ * Two matches are identical if they link the same pair of features with the
+ * same score (see {@link Match#equals(Object)}). Identical matches are only
+ * stored once.
+ *
+ * Match sets returned by the get* methods are sorted views of the primitive
+ * arrays, creating Match objects on demand. The arrays they use are copied
+ * before the first removal following their creation, so that they are not
+ * affected by later changes of the map.
+ *
+ * @author Michaël Michaud
+ */
+public class CompactMatchMap extends AbstractMatchMap {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Source index of a removed match
+    private static final int REMOVED = -1;
+
+    // Dense indices of source and target features
+    private List<Feature> sources = new ArrayList<>();
+    private List<Feature> targets = new ArrayList<>();
+    private final Map<Feature,Integer> sourceIndex = new HashMap<>();
+    private final Map<Feature,Integer> targetIndex = new HashMap<>();
+    // Feature IDs, to compare matches without calling Feature.getID()
+    private int[] sourceIds = new int[INITIAL_CAPACITY];
+    private int[] targetIds = new int[INITIAL_CAPACITY];
+
+    // Matches
+    private int size = 0;
+    private int[] src = new int[INITIAL_CAPACITY];
+    private int[] tgt = new int[INITIAL_CAPACITY];
+    private double[] score = new double[INITIAL_CAPACITY];
+    // true if match sets returned by get* methods use src, tgt and score
+    private boolean shared = false;
+
+    // Compressed sparse row and column layouts, valid if indexed is true.
+    // Matches of source s are bySource[sourceOffsets[s]..sourceOffsets[s+1]]
+    private boolean indexed = false;
+    private int[] bySource;
+    private int[] sourceOffsets;
+    private int[] byTarget;
+    private int[] targetOffsets;
+    // Matches sorted from the best to the worst one, computed on demand
+    private int[] order;
+
+    /**
+     * Construct a new CompactMatchMap.
+     */
+    public CompactMatchMap() {}
+
+    /**
+     * Add a match to this MatchMap.
+     */
+    public void add(Match m) {
+        add(m.getSource(), m.getTarget(), m.getScore());
+    }
+
+    private void add(Feature source, Feature target, double matchScore) {
+        int s = sourceIndex(source);
+        int t = targetIndex(target);
+        if (size == src.length) {
+            int capacity = 2 * size;
+            src = Arrays.copyOf(src, capacity);
+            tgt = Arrays.copyOf(tgt, capacity);
+            score = Arrays.copyOf(score, capacity);
+        }
+        src[size] = s;
+        tgt[size] = t;
+        score[size] = matchScore;
+        size++;
+        indexed = false;
+    }
+
+    private int sourceIndex(Feature f) {
+        Integer index = sourceIndex.get(f);
+        if (index == null) {
+            index = sources.size();
+            sources.add(f);
+            sourceIndex.put(f, index);
+            if (index == sourceIds.length) sourceIds = Arrays.copyOf(sourceIds, 2 * index);
+            sourceIds[index] = f.getID();
+        }
+        return index;
+    }
+
+    private int targetIndex(Feature f) {
+        Integer index = targetIndex.get(f);
+        if (index == null) {
+            index = targets.size();
+            targets.add(f);
+            targetIndex.put(f, index);
+            if (index == targetIds.length) targetIds = Arrays.copyOf(targetIds, 2 * index);
+            targetIds[index] = f.getID();
+        }
+        return index;
+    }
+
+    /**
+     * Get the whole match Set.
+     */
+    public SortedSet<Match> getAllMatches() {
+        index();
+        return slice(order(), 0, size);
+    }
+
+    /**
+     * Get the set of features matching one or more features.
+     */
+    public Set<Feature> getSourceFeatures() {
+        index();
+        Set<Feature> set = new LinkedHashSet<>();
+        for (int s = 0 ; s < sources.size() ; s++) {
+            if (sourceOffsets[s+1] > sourceOffsets[s]) set.add(sources.get(s));
+        }
+        return set;
+    }
+
+    /**
+     * Get the set of features being matched by one or more features.
+     */
+    public Set<Feature> getTargetFeatures() {
+        index();
+        Set<Feature> set = new LinkedHashSet<>();
+        for (int t = 0 ; t < targets.size() ; t++) {
+            if (targetOffsets[t+1] > targetOffsets[t]) set.add(targets.get(t));
+        }
+        return set;
+    }
+
+    /**
+     * Get Matches recorded for this source Feature.
+     */
+    public SortedSet<Match> getMatchesForSourceFeature(Feature f) {
+        index();
+        Integer s = sourceIndex.get(f);
+        return s == null ? EMPTY_SET : slice(bySource, sourceOffsets[s], sourceOffsets[s+1]);
+    }
+
+    /**
+     * Get Matches recorded for this target Feature.
+     */
+    public SortedSet<Match> getMatchesForTargetFeature(Feature f) {
+        index();
+        Integer t = targetIndex.get(f);
+        return t == null ? EMPTY_SET : slice(byTarget, targetOffsets[t], targetOffsets[t+1]);
+    }
+
+    /**
+     * Get Features matching source Feature f.
+     */
+    public List<Feature> getMatchedFeaturesFromSource(Feature f) {
+        index();
+        List<Feature> list = new ArrayList<>();
+        Integer s = sourceIndex.get(f);
+        if (s == null) return list;
+        for (int k = sourceOffsets[s] ; k < sourceOffsets[s+1] ; k++) {
+            list.add(targets.get(tgt[bySource[k]]));
+        }
+        return list;
+    }
+
+    /**
+     * Get Features matching target Feature f.
+     */
+    public List<Feature> getMatchedFeaturesFromTarget(Feature f) {
+        index();
+        List<Feature> list = new ArrayList<>();
+        Integer t = targetIndex.get(f);
+        if (t == null) return list;
+        for (int k = targetOffsets[t] ; k < targetOffsets[t+1] ; k++) {
+            list.add(sources.get(src[byTarget[k]]));
+        }
+        return list;
+    }
+
+    /**
+     * Return Match from source to target.
+     */
+    public SortedSet<Match> getMatches(Feature source, Feature target) {
+        index();
+        Integer s = sourceIndex.get(source);
+        Integer t = targetIndex.get(target);
+        if (s == null || t == null) return EMPTY_SET;
+        List<Match> list = new ArrayList<>();
+        for (int k = sourceOffsets[s] ; k < sourceOffsets[s+1] ; k++) {
+            if (tgt[bySource[k]] == t) list.add(match(bySource[k]));
+        }
+        return new MatchSet(list.toArray(new Match[0]), 0, list.size());
+    }
+
+    /**
+     * Remove all the matches of the source feature if singleTarget is true,
+     * and all the matches of the target feature if singleSource is true.
+     */
+    public void removeMatch(Match m, boolean singleSource, boolean singleTarget) {
+        index();
+        Integer s = sourceIndex.get(m.getSource());
+        Integer t = targetIndex.get(m.getTarget());
+        if (singleTarget && s != null) {
+            for (int k = sourceOffsets[s] ; k < sourceOffsets[s+1] ; k++) {
+                markRemoved(bySource[k]);
+            }
+        }
+        if (singleSource && t != null) {
+            for (int k = targetOffsets[t] ; k < targetOffsets[t+1] ; k++) {
+                markRemoved(byTarget[k]);
+            }
+        }
+    }
+
+    /**
+     * Remove a match from the map.
+     */
+    public void removeMatch(Match m) {
+        index();
+        Integer s = sourceIndex.get(m.getSource());
+        Integer t = targetIndex.get(m.getTarget());
+        if (s == null || t == null) return;
+        for (int k = sourceOffsets[s] ; k < sourceOffsets[s+1] ; k++) {
+            int i = bySource[k];
+            if (tgt[i] == t && score[i] == m.getScore()) markRemoved(i);
+        }
+    }
+
+    /**
+     * Filter the matchMap so that each source feature has only one target match
+     * and/or each target feature has only one source match.
+     */
+    public CompactMatchMap filter(boolean singleSource, boolean singleTarget) {
+        if (!singleSource && !singleTarget) return this;
+        index();
+        int[] order = order();
+        boolean[] matchedSources = new boolean[sources.size()];
+        boolean[] matchedTargets = new boolean[targets.size()];
+        CompactMatchMap matchMap = new CompactMatchMap();
+        for (int i : order) {
+            if (singleTarget && matchedSources[src[i]]) continue;
+            else if (singleSource && matchedTargets[tgt[i]]) continue;
+            matchedSources[src[i]] = true;
+            matchedTargets[tgt[i]] = true;
+            matchMap.add(sources.get(src[i]), targets.get(tgt[i]), score[i]);
+        }
+        return matchMap;
+    }
+
+    public void clear() {
+        // match sets already returned keep the previous lists and arrays
+        sources = new ArrayList<>();
+        targets = new ArrayList<>();
+        sourceIndex.clear();
+        targetIndex.clear();
+        sourceIds = new int[INITIAL_CAPACITY];
+        targetIds = new int[INITIAL_CAPACITY];
+        src = new int[INITIAL_CAPACITY];
+        tgt = new int[INITIAL_CAPACITY];
+        score = new double[INITIAL_CAPACITY];
+        shared = false;
+        size = 0;
+        indexed = false;
+    }
+
+    private Match match(int i) {
+        return new Match(sources.get(src[i]), targets.get(tgt[i]), score[i]);
+    }
+
+    /**
+     * Returns a sorted view of the matches layout[from..to), which must be
+     * sorted. Match objects are created on demand from the current arrays.
+     */
+    private SortedSet<Match> slice(final int[] layout, int from, int to) {
+        if (from == to) return EMPTY_SET;
+        final List<Feature> sources = this.sources;
+        final List<Feature> targets = this.targets;
+        final int[] src = this.src;
+        final int[] tgt = this.tgt;
+        final double[] score = this.score;
+        shared = true;
+        return new MatchSet(k -> new Match(
+                sources.get(src[layout[k]]), targets.get(tgt[layout[k]]), score[layout[k]]),
+                from, to);
+    }
+
+    // Marks match i as removed, copying the arrays used by match sets first
+    private void markRemoved(int i) {
+        if (shared) {
+            src = src.clone();
+            tgt = tgt.clone();
+            score = score.clone();
+            shared = false;
+        }
+        src[i] = REMOVED;
+        indexed = false;
+    }
+
+    // Indices of all the matches, sorted from the best to the worst one
+    private int[] order() {
+        if (order == null) {
+            order = new int[size];
+            for (int i = 0 ; i < size ; i++) order[i] = i;
+            sort(order, new int[size], 0, size);
+        }
+        return order;
+    }
+
+    /**
+     * Sort matches into the compressed sparse row and column layouts.
+     */
+    private void index() {
+        if (indexed) return;
+        compact();
+        buildLayouts();
+        // identical matches are contiguous in a source slice
+        boolean duplicates = false;
+        for (int s = 0 ; s < sources.size() ; s++) {
+            // kept is the last match of the slice which is not a duplicate
+            int kept = sourceOffsets[s];
+            for (int k = sourceOffsets[s] + 1 ; k < sourceOffsets[s+1] ; k++) {
+                if (compare(bySource[kept], bySource[k]) == 0) {
+                    markRemoved(bySource[k]);
+                    duplicates = true;
+                } else {
+                    kept = k;
+                }
+            }
+        }
+        if (duplicates) {
+            compact();
+            buildLayouts();
+        }
+        indexed = true;
+    }
+
+    // Remove matches marked as REMOVED from the arrays
+    private void compact() {
+        int n = 0;
+        for (int i = 0 ; i < size ; i++) {
+            if (src[i] == REMOVED) continue;
+            src[n] = src[i];
+            tgt[n] = tgt[i];
+            score[n] = score[i];
+            n++;
+        }
+        size = n;
+    }
+
+    private void buildLayouts() {
+        order = null;
+        int[] tmp = new int[size];
+        sourceOffsets = offsets(src, sources.size());
+        bySource = layout(src, sourceOffsets);
+        for (int s = 0 ; s < sources.size() ; s++) {
+            sort(bySource, tmp, sourceOffsets[s], sourceOffsets[s+1]);
+        }
+        targetOffsets = offsets(tgt, targets.size());
+        byTarget = layout(tgt, targetOffsets);
+        for (int t = 0 ; t < targets.size() ; t++) {
+            sort(byTarget, tmp, targetOffsets[t], targetOffsets[t+1]);
+        }
+    }
+
+    // Offsets of each feature slice (counting sort of matches by feature)
+    private int[] offsets(int[] keys, int n) {
+        int[] offsets = new int[n + 1];
+        for (int i = 0 ; i < size ; i++) offsets[keys[i] + 1]++;
+        for (int k = 0 ; k < n ; k++) offsets[k + 1] += offsets[k];
+        return offsets;
+    }
+
+    private int[] layout(int[] keys, int[] offsets) {
+        int[] layout = new int[size];
+        int[] position = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0 ; i < size ; i++) layout[position[keys[i]]++] = i;
+        return layout;
+    }
+
+    /**
+     * Same ordering as {@link Match#compareTo(Match)} : score from the best
+     * to the worst, then source ID, then target ID.
+     */
+    private int compare(int i, int j) {
+        if (score[i] > score[j]) return -1;
+        else if (score[i] < score[j]) return 1;
+        int c = Integer.compare(sourceIds[src[i]], sourceIds[src[j]]);
+        if (c != 0) return c;
+        return Integer.compare(targetIds[tgt[i]], targetIds[tgt[j]]);
+    }
+
+    // Merge sort of match indices from lo (inclusive) to hi (exclusive)
+    private void sort(int[] a, int[] tmp, int lo, int hi) {
+        if (hi - lo <= 16) {
+            for (int i = lo + 1 ; i < hi ; i++) {
+                int v = a[i];
+                int j = i - 1;
+                while (j >= lo && compare(a[j], v) > 0) {
+                    a[j+1] = a[j];
+                    j--;
+                }
+                a[j+1] = v;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sort(a, tmp, lo, mid);
+        sort(a, tmp, mid, hi);
+        if (compare(a[mid-1], a[mid]) <= 0) return;
+        System.arraycopy(a, lo, tmp, lo, hi - lo);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) a[k++] = compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+        while (i < mid) a[k++] = tmp[i++];
+        while (j < hi) a[k++] = tmp[j++];
+    }
+
+}
@@ -26,13 +26,37 @@ import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.task.TaskMonitor;
 import fr.michaelm.jump.plugin.match.matcher.*;
 import fr.michaelm.util.text.Rule;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.algorithm.locate.SimplePointInAreaLocator;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.util.PolygonExtracter;
+import org.locationtech.jts.index.strtree.AbstractNode;
+import org.locationtech.jts.index.strtree.Boundable;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.ItemDistance;
 import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
 import org.locationtech.jts.operation.union.UnaryUnionOp;
+import org.locationtech.jts.shape.fractal.HilbertCode;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Matcher iterating through two FeatureCollection to find matching features.
@@ -47,8 +71,42 @@ public class FeatureCollectionMatcher {
     private final StringMatcher attributeMatcher;
     private final TaskMonitor monitor;
 
-    private MatchMap matchMap;
-    public boolean interrupted = false;
+    private AbstractMatchMap matchMap;
+    public volatile boolean interrupted = false;
+
+    // if parallel is true, source features are processed by several threads
+    private boolean parallel = false;
+    // number of source features processed sequentially by a single fork-join task
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    // if spatialOrdering is true, source features are processed along a
+    // Hilbert curve and consecutive features share candidate queries
+    private boolean spatialOrdering = false;
+    // level of the Hilbert curve used to sort source features
+    // (codes use 2 * HILBERT_LEVEL bits and must be positive integers)
+    private static final int HILBERT_LEVEL = 15;
+
+    // if treeJoin is true, source features are indexed too, and candidates
+    // are found by traversing source and target trees together
+    private boolean treeJoin = false;
+
+    // if partIndexing is true, each component of a multi-geometry target
+    // is indexed with its own envelope
+    private boolean partIndexing = false;
+
+    // if subdivision > 0, target polygons having more than subdivision
+    // points are cut into tiles of at most about subdivision points
+    private int subdivision = 0;
+    // maximum number of recursive cuts of a target polygon into 4 tiles
+    private static final int MAX_SUBDIVISION_DEPTH = 10;
+
+    // if nearestNeighbours > 0, distance matchers compare each source
+    // feature with its nearestNeighbours nearest target features only
+    private int nearestNeighbours = 0;
+
+    // context passed to the geometry matcher, caching data computed from
+    // the geometries (prepared geometries...) between match calls
+    private final MatchContext context = new MatchContext();
     
     // set n_m = true to try to match source features to several target 
     // features in one shot.
@@ -69,10 +127,10 @@ public class FeatureCollectionMatcher {
                                     GeometryMatcher geometryMatcher,
                                     StringMatcher attributeMatcher,
                                     TaskMonitor monitor) {
-        if (geometryMatcher == MatchAllMatcher.MATCH_ALL) {
+        if (geometryMatcher instanceof MatchAllMatcher) {
             geometryMatcher = null;
         }
-        if (attributeMatcher == MatchAllStringsMatcher.MATCH_ALL) {
+        if (attributeMatcher instanceof MatchAllStringsMatcher) {
             attributeMatcher = null;
         }
         assert geometryMatcher != null || attributeMatcher != null :
@@ -118,13 +176,170 @@ public class FeatureCollectionMatcher {
         return matchMap.getSourceFeatures();
     }
     
-    public MatchMap getMatchMap() {
+    /**
+     * Streaming version of {@link #matchAll(boolean, boolean)} for N:M
+     * matching (no singleSource nor singleTarget filter). Each match is
+     * pushed to consumer as soon as it is scored instead of being stored in
+     * the MatchMap, so that memory does not depend on the number of matches.
+     * Matches of a source feature are pushed together, once all its
+     * candidates have been evaluated. In parallel mode, source features are
+     * processed in no particular order, but consumer is never called
+     * concurrently by several threads.
+     * The MatchMap of this FeatureCollectionMatcher is not modified.
+     * @param consumer the consumer receiving the matches
+     */
+    public void matchAll(Consumer<Match> consumer) throws Exception {
+        if (geometryMatcher != null) {
+            monitor.report("Geometry matching");
+            geometryMatching(false, consumer);
+        }
+        else if (attributeMatcher != null) {
+            monitor.report("Attribute matching");
+            attributeMatching(consumer);
+        }
+        else {
+            throw new Exception("Invalid params (both geometric and attribute matchers are null !)");
+        }
+    }
+
+    public AbstractMatchMap getMatchMap() {
         return matchMap;
     }
+
+    /**
+     * If parallel is true, geometry matching splits the source collection
+     * into fork-join tasks sharing the same (read-only) target index.
+     * The resulting MatchMap is the same as the one obtained with a
+     * sequential processing. The GeometryMatcher must be thread-safe.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * If spatialOrdering is true, source features are sorted along a Hilbert
+     * curve of their envelope centres before geometry matching, and the
+     * target index is queried with a window larger than the source envelope,
+     * whose candidates are reused by the following source features as long
+     * as their query envelope is inside the window.
+     * The resulting MatchMap is the same, but matches pushed to a consumer
+     * come in the Hilbert order.
+     */
+    public void setSpatialOrdering(boolean spatialOrdering) {
+        this.spatialOrdering = spatialOrdering;
+    }
+
+    public boolean isSpatialOrdering() {
+        return spatialOrdering;
+    }
+
+    /**
+     * If treeJoin is true, geometry matching indexes source features (with
+     * their envelope expanded by the maximum distance) in a second STRtree
+     * and finds candidates by traversing both trees together, one source
+     * leaf node at a time, instead of querying the target tree once for each
+     * source feature. This is usually faster for collections of similar size.
+     * Source features are then processed in the source tree order, and
+     * spatial ordering is not used.
+     * Candidates and resulting matches are the same as with direct queries.
+     */
+    public void setTreeJoin(boolean treeJoin) {
+        this.treeJoin = treeJoin;
+    }
+
+    public boolean isTreeJoin() {
+        return treeJoin;
+    }
+
+    /**
+     * If partIndexing is true, each component of a target multi-geometry is
+     * inserted in the target index with its own envelope, and candidates
+     * found through several components are counted once. A target whose
+     * parts are scattered (archipelago, split parcel) is then a candidate
+     * for the sources near one of its parts only, instead of all the
+     * sources inside its envelope.
+     * Part indexing is used when a source matches a single target only :
+     * matches are the same as with one envelope per target. In N:M mode,
+     * the union of candidates must contain all the targets whose envelope
+     * is near the source, and targets are indexed with their envelope.
+     * The k nearest neighbours mode always uses one envelope per feature.
+     */
+    public void setPartIndexing(boolean partIndexing) {
+        this.partIndexing = partIndexing;
+    }
+
+    public boolean isPartIndexing() {
+        return partIndexing;
+    }
+
+    /**
+     * If maxVertices is greater than 0, target polygons having more than
+     * maxVertices points are recursively cut into 4 tiles along the median
+     * lines of their envelope until tiles have at most maxVertices points,
+     * when the GeometryMatcher can combine tile scores
+     * ({@link GeometryMatcher#canMatchTiles()}). Sources are then compared
+     * with the tiles near them only, so that matching a small feature with a
+     * huge polygon depends on the local complexity of the polygon :
+     * IntersectsMatcher matches if any tile matches, MinimumDistanceMatcher
+     * keeps the best tile score, and the overlap matchers sum the tile
+     * intersection areas. Other matchers use the whole target.
+     * The N:M step matching a source with the union of its candidates uses
+     * whole targets. 0 (default) disables the subdivision.
+     */
+    public void setSubdivision(int maxVertices) {
+        this.subdivision = Math.max(0, maxVertices);
+    }
+
+    public int getSubdivision() {
+        return subdivision;
+    }
+
+    /**
+     * Sets the number k of nearest target features compared with each source
+     * feature when the GeometryMatcher is a MinimumDistanceMatcher or a
+     * CentroidDistanceMatcher. Candidates are found with
+     * STRtree.nearestNeighbour and the exact distance used by the matcher,
+     * so that their number depends neither on the local density nor on the
+     * maximum distance. Candidates are still scored by the GeometryMatcher :
+     * targets farther than the maximum distance do not match.
+     * The source is not matched with the union of its candidates in this mode.
+     * 0 (default) disables the k nearest neighbours mode.
+     */
+    public void setNearestNeighbours(int k) {
+        this.nearestNeighbours = Math.max(0, k);
+    }
+
+    public int getNearestNeighbours() {
+        return nearestNeighbours;
+    }
+
+    /**
+     * If compact is true, matches are stored in a {@link CompactMatchMap},
+     * which uses much less memory than the default MatchMap for dense N:M
+     * matchings. Matches already recorded are kept.
+     */
+    public void setCompactMatchMap(boolean compact) {
+        if (compact == (matchMap instanceof CompactMatchMap)) return;
+        AbstractMatchMap newMatchMap = compact ? new CompactMatchMap() : new MatchMap();
+        for (Match match : matchMap.getAllMatches()) newMatchMap.add(match);
+        matchMap = newMatchMap;
+    }
     
     public void clearMatchMap() {
         matchMap.clear();
     }
+
+    /**
+     * Returns the MatchContext passed to the GeometryMatcher, which caches
+     * data computed from the geometries of the matched features.
+     */
+    public MatchContext getContext() {
+        return context;
+    }
     
     
     /**
@@ -136,111 +351,325 @@ public class FeatureCollectionMatcher {
      * @param singleTarget whether a source feature can match several target 
      * features or not.
      */
-    public MatchMap geometryMatching(boolean singleSource, boolean singleTarget) throws Exception {
-        double maxDistance = geometryMatcher.getMaximumDistance();
-        if (Double.isNaN(maxDistance)) maxDistance = 0.0;
+    public AbstractMatchMap geometryMatching(boolean singleSource, boolean singleTarget) throws Exception {
+        geometryMatching(singleTarget, null);
+        return matchMap;
+    }
+
+    /**
+     * Matches source feature geometries with target feature geometries.
+     * If consumer is null, matches are added to the MatchMap, else, they are
+     * combined with the attribute matcher (if any) and pushed to consumer.
+     */
+    private void geometryMatching(final boolean singleTarget, Consumer<Match> consumer) throws Exception {
+        final double maxDistance = Double.isNaN(geometryMatcher.getMaximumDistance()) ?
+                0.0 : geometryMatcher.getMaximumDistance();
         //System.out.println("Geometry Matching " + geometryMatcher + " " + maxDistance);
         long t0 = System.currentTimeMillis();
         //double minOverlapping = geometryMatcher.getMinimumOverlapping();
         //System.out.println("geometryMatcher.minOverlapping = " + minOverlapping);
         monitor.report("Geometry matching : indexing features");
-        STRtree index = indexFeatureCollection(target);
+        final List<Feature> sources;
+        final Supplier<SourceMatcher> sourceMatchers;
+        if (nearestNeighbours > 0 && isDistanceMatcher()) {
+            final STRtree index = indexFeatureCollection(target);
+            index.build();
+            final ItemDistance distance = nearestNeighbourDistance();
+            sources = spatialOrdering ? hilbertOrder(source) : new ArrayList<>(source);
+            sourceMatchers = () -> (i, f1) -> matchNearestNeighbours(f1, index, distance);
+        } else if (isEqualityMatching(singleTarget)) {
+            // equal geometries have equal hash codes : candidates are found
+            // by a hash join, without spatial index
+            final EqualityJoin join = new EqualityJoin(target);
+            sources = spatialOrdering ? hilbertOrder(source) : new ArrayList<>(source);
+            sourceMatchers = () -> join::match;
+        } else if (isPointInPolygonMatching(singleTarget)) {
+            // source points are located in the candidate polygons with a
+            // locator built once per polygon
+            final PointInPolygonJoin join = new PointInPolygonJoin(source, target);
+            sources = spatialOrdering ? hilbertOrder(source) : new ArrayList<>(source);
+            sourceMatchers = () -> join::match;
+        } else if (isPointMatching(singleTarget, maxDistance)) {
+            // fast path : points are matched on coordinates, without any
+            // Geometry method call
+            final PointGrid grid = new PointGrid(target, maxDistance);
+            sources = spatialOrdering ? hilbertOrder(source) : new ArrayList<>(source);
+            sourceMatchers = () -> grid::match;
+        } else {
+            // the N:M step matches sources with the union of the targets
+            // whose envelope is near them : parts are not indexed
+            final boolean parts = partIndexing && singleTarget;
+            final STRtree index = indexFeatureCollection(target, parts);
+            // STRtree is built lazily by the first query : build it before it
+            // is shared between threads
+            index.build();
+            final Subdivision tiles = subdivision > 0 && geometryMatcher.canMatchTiles() ?
+                    new Subdivision(target, subdivision) : null;
+            final Supplier<CandidateFinder> finders;
+            if (treeJoin) {
+                final SourceTree sourceTree = new SourceTree(source, maxDistance);
+                sources = sourceTree.sources;
+                finders = () -> new TreeJoinFinder(sourceTree, index);
+            } else if (spatialOrdering) {
+                sources = hilbertOrder(source);
+                final double margin = CandidateWindow.margin(sources, maxDistance, index);
+                finders = () -> new CandidateWindow(index, margin);
+            } else {
+                sources = new ArrayList<>(source);
+                finders = parts ?
+                        () -> (i, env) -> features(index.query(env)) :
+                        () -> (i, env) -> index.query(env);
+            }
+            sourceMatchers = () -> {
+                CandidateFinder finder = finders.get();
+                return (i, f1) -> matchSourceFeature(i, f1, finder, tiles, maxDistance, singleTarget);
+            };
+        }
         // For each feature of the source collection
         monitor.report("Geometry matching : matching feature geometries");
-        int countf1 = 0;
-        int total = source.size();
-        for (Feature f1 : source) {
-            //System.out.println("Feature " + f1.getID());
-            Geometry g1 = f1.getGeometry();
-            Envelope env = new Envelope(g1.getEnvelopeInternal());
-            env.expandBy(maxDistance);
-            List<Feature> candidates = index.query(env);
-            // if matching_layer = reference_layer don't try to match f1 with itself
-            candidates.remove(f1);
-            // This loop can select several target features for one source
-            // feature, a singleTarget filter must be applied afterwards
-            int countf2 = 0;
-            // if multiple targets are authorized, a oneOneMatches map is built
-            // during the one-to-one match phase in order to be used and optimize
-            // the phase where we try to match source with union of candidates. 
-            Map<Feature,Match> oneOneMatches = null;
-            if (!singleTarget) oneOneMatches = new HashMap<>();
-            for (Feature f2 : candidates) {
-                double score = geometryMatcher.match(f1, f2, null);
-                if (score > 0.0) {
-                    Match match = new Match(f1, f2, score);
-                    matchMap.add(match);
-                    if (!singleTarget) oneOneMatches.put(f2, match);
-                    countf2++;
+        if (parallel) {
+            parallelGeometryMatching(sources, sourceMatchers, consumer);
+            if (interrupted) return;
+        } else {
+            int total = sources.size();
+            SourceMatcher sourceMatcher = sourceMatchers.get();
+            for (int i = 0 ; i < total ; i++) {
+                List<Match> matches = sourceMatcher.match(i, sources.get(i));
+                if (consumer == null) {
+                    for (Match match : matches) matchMap.add(match);
+                } else {
+                    push(combineAttributeScores(matches), consumer);
+                }
+                if (monitor.isCancelRequested()) {
+                    interrupted = true;
+                    return;
                 }
+                monitor.report(i+1, total, "features");
             }
-            
-            // If one source can match multiple target 
-            // and several target candidates are available
-            // and some candidates have not been individually matched
-            if (!singleTarget && candidates.size() > 1 && !(countf2 == candidates.size())) {
-                Geometry globalTarget = union(candidates);
-                // if g1 matches the union of candidates, we try to attribute 
-                // a score to each g1/candidate pair
-                if (geometryMatcher.match(g1, globalTarget, null) > 0) {
-                    Geometry g1Buffer = g1.buffer(maxDistance, 4);
-                    // if g1 matches union of g2, we put all g1/g2 matches 
-                    // in a temporary structure ordered by match scores
-                    Set<Match> partialMatches = new TreeSet<Match>();
-                    for (Feature f2 : candidates) {
-                        Geometry g2Buffer = f2.getGeometry().buffer(maxDistance, 4);
-                        Geometry intersection = g1Buffer.intersection(g2Buffer);
-                        if (intersection.isEmpty()) continue;
-                        double ratio1 = intersection.getArea()/g1Buffer.getArea();
-                        double ratio2 = intersection.getArea()/g2Buffer.getArea();
-                        if (ratio1 > 0.01) {
-                            // we set the ratio of the temporary match to the
-                            // max of ratio1 and ratio 2 (match is good if f1
-                            // buffer covers a lrage part of f2 or if f2 buffer
-                            // covers a large part of f1
-                            partialMatches.add(new Match(f1, f2, Math.max(ratio1, ratio2)));
-                        }
+        }
+        System.out.println("Direct Geometry Matching done in " + (System.currentTimeMillis()-t0) + " ms");
+    }
+
+    /**
+     * Pushes matches to consumer, making sure that consumer is not called by
+     * several threads at the same time.
+     */
+    private void push(List<Match> matches, Consumer<Match> consumer) {
+        if (matches.isEmpty()) return;
+        synchronized (consumer) {
+            for (Match match : matches) consumer.accept(match);
+        }
+    }
+
+    /**
+     * Matches source features in parallel. Each task collects the matches of
+     * its own source features, and matches are merged into the MatchMap in
+     * the source collection order, once all the tasks are completed.
+     * If consumer is not null, matches are pushed to it by the tasks instead.
+     */
+    private void parallelGeometryMatching(final List<Feature> sources,
+                                          final Supplier<SourceMatcher> sourceMatchers,
+                                          final Consumer<Match> consumer) throws Exception {
+        final List<List<Match>> results = consumer == null ?
+                new ArrayList<>(Collections.nCopies(sources.size(), null)) : null;
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        ForkJoinPool.commonPool().invoke(new GeometryMatchingTask(
+                sources, results, consumer, 0, sources.size(),
+                sourceMatchers, count, error));
+        if (error.get() != null) throw error.get();
+        if (interrupted || consumer != null) return;
+        for (List<Match> matches : results) {
+            for (Match match : matches) matchMap.add(match);
+        }
+    }
+
+    /**
+     * Fork-join task matching source features from index start (inclusive)
+     * to index end (exclusive). Matches of source i are stored in results at
+     * index i, or pushed to consumer if it is not null.
+     */
+    private class GeometryMatchingTask extends RecursiveAction {
+
+        final List<Feature> sources;
+        final List<List<Match>> results;
+        final Consumer<Match> consumer;
+        final int start, end;
+        final Supplier<SourceMatcher> sourceMatchers;
+        final AtomicInteger count;
+        final AtomicReference<Exception> error;
+
+        GeometryMatchingTask(List<Feature> sources, List<List<Match>> results,
+                             Consumer<Match> consumer, int start, int end,
+                             Supplier<SourceMatcher> sourceMatchers,
+                             AtomicInteger count, AtomicReference<Exception> error) {
+            this.sources = sources;
+            this.results = results;
+            this.consumer = consumer;
+            this.start = start;
+            this.end = end;
+            this.sourceMatchers = sourceMatchers;
+            this.count = count;
+            this.error = error;
+        }
+
+        protected void compute() {
+            if (end - start > PARALLEL_THRESHOLD) {
+                int middle = (start + end) >>> 1;
+                invokeAll(
+                    new GeometryMatchingTask(sources, results, consumer, start, middle,
+                        sourceMatchers, count, error),
+                    new GeometryMatchingTask(sources, results, consumer, middle, end,
+                        sourceMatchers, count, error));
+                return;
+            }
+            int total = sources.size();
+            // each task processes a contiguous range of sources with its own
+            // SourceMatcher
+            SourceMatcher sourceMatcher = sourceMatchers.get();
+            for (int i = start ; i < end ; i++) {
+                if (interrupted || error.get() != null) return;
+                try {
+                    List<Match> matches = sourceMatcher.match(i, sources.get(i));
+                    if (consumer == null) results.set(i, matches);
+                    else push(combineAttributeScores(matches), consumer);
+                } catch (Exception e) {
+                    error.compareAndSet(null, e);
+                    return;
+                }
+                if (monitor.isCancelRequested()) {
+                    interrupted = true;
+                    return;
+                }
+                int n = count.incrementAndGet();
+                synchronized (monitor) {
+                    monitor.report(n, total, "features");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the matches found for source feature f1 (at index i in the
+     * source list) among target candidates, in the order they must be added
+     * to the MatchMap.
+     * This method does not modify the state of this FeatureCollectionMatcher
+     * so that it can be called concurrently for different source features.
+     * @param finder candidate finder of the calling thread
+     * @param tiles tiles of the large target polygons, or null
+     */
+    private List<Match> matchSourceFeature(int i, Feature f1, CandidateFinder finder,
+                             Subdivision tiles, double maxDistance,
+                             boolean singleTarget) throws Exception {
+        List<Match> matches = new ArrayList<>();
+        //System.out.println("Feature " + f1.getID());
+        Geometry g1 = f1.getGeometry();
+        Envelope env = new Envelope(g1.getEnvelopeInternal());
+        env.expandBy(maxDistance);
+        List<Feature> candidates = finder.find(i, env);
+        // a target may have been found through several of its parts
+        if (partIndexing && singleTarget) candidates = new ArrayList<>(new LinkedHashSet<>(candidates));
+        // if matching_layer = reference_layer don't try to match f1 with itself
+        candidates.remove(f1);
+        // This loop can select several target features for one source
+        // feature, a singleTarget filter must be applied afterwards
+        int countf2 = 0;
+        // if multiple targets are authorized, a oneOneMatches map is built
+        // during the one-to-one match phase in order to be used and optimize
+        // the phase where we try to match source with union of candidates. 
+        Map<Feature,Match> oneOneMatches = null;
+        if (!singleTarget) oneOneMatches = new HashMap<>();
+        for (Feature f2 : candidates) {
+            // cheap rejection of candidates which cannot match (false
+            // positives from the index) before the exact computation
+            if (geometryMatcher.scoreUpperBound(g1, f2.getGeometry(), context) <= 0.0) continue;
+            double score = tiles == null ?
+                    geometryMatcher.match(f1, f2, context) : tiles.match(f1, f2, env);
+            if (score > 0.0) {
+                Match match = new Match(f1, f2, score);
+                matches.add(match);
+                if (!singleTarget) oneOneMatches.put(f2, match);
+                countf2++;
+            }
+        }
+        
+        // If one source can match multiple target 
+        // and several target candidates are available
+        // and some candidates have not been individually matched
+        if (!singleTarget && candidates.size() > 1 && !(countf2 == candidates.size())) {
+            Geometry globalTarget = union(candidates);
+            // if g1 matches the union of candidates, we try to attribute 
+            // a score to each g1/candidate pair
+            // (globalTarget is used once, it is not worth caching its data)
+            if (geometryMatcher.match(g1, globalTarget, null) > 0) {
+                // buffers are cached in the context : target buffers are
+                // shared by all the sources having the target as candidate
+                Geometry g1Buffer = context.getBuffer(g1, maxDistance, 4);
+                PreparedGeometry g1PreparedBuffer = context.getPreparedGeometry(g1Buffer);
+                // if g1 matches union of g2, we put all g1/g2 matches 
+                // in a temporary structure ordered by match scores
+                Set<Match> partialMatches = new TreeSet<Match>();
+                for (Feature f2 : candidates) {
+                    Geometry g2Buffer = context.getBuffer(f2.getGeometry(), maxDistance, 4);
+                    if (!g1PreparedBuffer.intersects(g2Buffer)) continue;
+                    double intersectionArea = IntersectionMeasure.area(g1Buffer, g2Buffer, context);
+                    double ratio1 = intersectionArea/context.getArea(g1Buffer);
+                    double ratio2 = intersectionArea/context.getArea(g2Buffer);
+                    if (ratio1 > 0.01) {
+                        // we set the ratio of the temporary match to the
+                        // max of ratio1 and ratio 2 (match is good if f1
+                        // buffer covers a lrage part of f2 or if f2 buffer
+                        // covers a large part of f1
+                        partialMatches.add(new Match(f1, f2, Math.max(ratio1, ratio2)));
                     }
-                    int countPartialMatches = 0;
-                    // Test temporary matches from the best score to the worst,
-                    // and add them to the final matchMap until f1 is completely 
-                    // covered by f2 buffers
-                    //SortedSet<Match> previousMatches = matchMap.getMatchesForSourceFeature(f1);
-                    for (Match match : partialMatches) {
-                        Match oneOneMatch = oneOneMatches.get(match.getTarget());
-                        if (oneOneMatch != null) {
-                            if (oneOneMatch.getScore() > match.getScore()) {
-                                continue;
-                            }
+                }
+                int countPartialMatches = 0;
+                // Test temporary matches from the best score to the worst,
+                // and add them to the final matchMap until f1 is completely 
+                // covered by f2 buffers
+                //SortedSet<Match> previousMatches = matchMap.getMatchesForSourceFeature(f1);
+                for (Match match : partialMatches) {
+                    Match oneOneMatch = oneOneMatches.get(match.getTarget());
+                    if (oneOneMatch != null) {
+                        if (oneOneMatch.getScore() > match.getScore()) {
+                            continue;
                         }
-                        // add at least one match
-                        if (0 == countPartialMatches) {
-                            if (oneOneMatch != null) matchMap.removeMatch(oneOneMatch);
-                            matchMap.add(match);                            
+                    }
+                    // add at least one match
+                    if (0 == countPartialMatches) {
+                        if (oneOneMatch != null) matches.remove(oneOneMatch);
+                        matches.add(match);                            
+                    }
+                    else {
+                        // g1 is the part of f1 not yet covered by candidate
+                        // buffers : the difference is computed only if the
+                        // candidate buffer partially covers it
+                        Geometry g2Buffer = context.getBuffer(match.getTarget().getGeometry(), maxDistance, 4);
+                        PreparedGeometry g2PreparedBuffer = context.getPreparedGeometry(g2Buffer);
+                        if (!g2PreparedBuffer.intersects(g1)) continue;
+                        // a one-to-one match with the same score is already
+                        // in matches and must not be added twice
+                        boolean known = match.equals(oneOneMatch);
+                        if (g2PreparedBuffer.covers(g1)) {
+                            // f1 is completely covered by candidate buffers
+                            if (!known) matches.add(match);
+                            break;
                         }
-                        else {
-                            // substract candidate buffer from f1
-                            Geometry diff = homogeneousDifference(g1, match.getTarget().getGeometry().buffer(maxDistance, 4));
-                            // Add the match if the diff operation modified original geometry
-                            if (!diff.equals(g1)) {
-                                matchMap.add(match);
-                            }
-                            // break if f1 is completely covered by candidate buffers
-                            if (diff.isEmpty()) break;
-                            else g1 = diff;
+                        // substract candidate buffer from f1
+                        Geometry diff = homogeneousDifference(g1, g2Buffer);
+                        // Add the match if the diff operation modified original geometry
+                        if (!known && !diff.equals(g1)) {
+                            matches.add(match);
                         }
-                        countPartialMatches++;
+                        // break if f1 is completely covered by candidate buffers
+                        if (diff.isEmpty()) break;
+                        else g1 = diff;
                     }
+                    countPartialMatches++;
                 }
             }
-            if (monitor.isCancelRequested()) {
-                interrupted = true;
-                return matchMap;
-            }
-            monitor.report(++countf1, total, "features");
         }
-        System.out.println("Direct Geometry Matching done in " + (System.currentTimeMillis()-t0) + " ms");
-        return matchMap;
+        return matches;
     }
     
     private Geometry homogeneousDifference(Geometry g1, Geometry g2) {
@@ -264,13 +693,776 @@ public class FeatureCollectionMatcher {
         return g;
     }
     
+    /**
+     * Returns features sorted along a Hilbert curve of their envelope centres,
+     * so that features close to each other in the list are close in space.
+     * Features with an empty geometry are put at the end.
+     */
+    private List<Feature> hilbertOrder(Collection<Feature> features) {
+        Envelope extent = new Envelope();
+        for (Feature f : features) extent.expandToInclude(f.getGeometry().getEnvelopeInternal());
+        final List<Feature> list = new ArrayList<>(features);
+        if (extent.isNull()) return list;
+        int max = (1 << HILBERT_LEVEL) - 1;
+        double scaleX = extent.getWidth() > 0.0 ? max / extent.getWidth() : 0.0;
+        double scaleY = extent.getHeight() > 0.0 ? max / extent.getHeight() : 0.0;
+        // codes are computed once and sorted with the feature positions
+        long[] keys = new long[list.size()];
+        for (int i = 0 ; i < keys.length ; i++) {
+            Envelope env = list.get(i).getGeometry().getEnvelopeInternal();
+            long code = 1L << (2 * HILBERT_LEVEL);
+            if (!env.isNull()) {
+                int x = (int)Math.round((env.centre().x - extent.getMinX()) * scaleX);
+                int y = (int)Math.round((env.centre().y - extent.getMinY()) * scaleY);
+                code = HilbertCode.encode(HILBERT_LEVEL, x, y);
+            }
+            keys[i] = (code << 32) | i;
+        }
+        Arrays.sort(keys);
+        List<Feature> sorted = new ArrayList<>(keys.length);
+        for (long key : keys) sorted.add(list.get((int)key));
+        return sorted;
+    }
+
+    /**
+     * Returns the matches of a source feature. Each thread uses its own
+     * SourceMatcher, which may keep state between consecutive calls.
+     */
+    private interface SourceMatcher {
+
+        /**
+         * Returns the matches of f1, the i-th source feature.
+         */
+        List<Match> match(int i, Feature f1) throws Exception;
+    }
+
+    private boolean isDistanceMatcher() {
+        return geometryMatcher instanceof MinimumDistanceMatcher ||
+               geometryMatcher instanceof CentroidDistanceMatcher;
+    }
+
+    /**
+     * Returns the exact distance between two indexed features used by the
+     * distance matcher. It is never less than the distance between their
+     * envelopes, as required by STRtree.nearestNeighbour.
+     */
+    private ItemDistance nearestNeighbourDistance() {
+        if (geometryMatcher instanceof CentroidDistanceMatcher) {
+            return (item1, item2) ->
+                context.getCentroid(((Feature)item1.getItem()).getGeometry()).distance(
+                context.getCentroid(((Feature)item2.getItem()).getGeometry()));
+        }
+        return (item1, item2) ->
+            ((Feature)item1.getItem()).getGeometry().distance(
+            ((Feature)item2.getItem()).getGeometry());
+    }
+
+    /**
+     * Returns the matches of f1 with its nearestNeighbours nearest target
+     * features.
+     */
+    private List<Match> matchNearestNeighbours(Feature f1, STRtree index,
+                                               ItemDistance distance) throws Exception {
+        List<Match> matches = new ArrayList<>();
+        Envelope env = f1.getGeometry().getEnvelopeInternal();
+        if (env.isNull() || index.size() == 0) return matches;
+        // one more neighbour is asked for in case f1 is in the target index
+        Object[] neighbours = index.nearestNeighbour(env, f1, distance, nearestNeighbours + 1);
+        ItemBoundable item1 = new ItemBoundable(env, f1);
+        List<Feature> candidates = new ArrayList<>(neighbours.length);
+        final Map<Feature,Double> distances = new HashMap<>();
+        for (Object neighbour : neighbours) {
+            Feature f2 = (Feature)neighbour;
+            // if matching_layer = reference_layer don't try to match f1 with itself
+            if (f2 == f1) continue;
+            candidates.add(f2);
+            distances.put(f2, distance.distance(item1,
+                    new ItemBoundable(f2.getGeometry().getEnvelopeInternal(), f2)));
+        }
+        // neighbours are not sorted : keep the nearest ones
+        candidates.sort(Comparator.comparingDouble(distances::get));
+        for (Feature f2 : candidates.subList(0, Math.min(nearestNeighbours, candidates.size()))) {
+            double score = geometryMatcher.match(f1, f2, context);
+            if (score > 0.0) matches.add(new Match(f1, f2, score));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns true if the point fast path can be used : all source and
+     * target geometries are non empty points, the geometry matcher is a
+     * plain MinimumDistanceMatcher or CentroidDistanceMatcher (which are
+     * equivalent for points) and a source matches a single target, so that
+     * N:M matching is not used.
+     */
+    private boolean isPointMatching(boolean singleTarget, double maxDistance) {
+        if (!singleTarget) return false;
+        Class<?> matcherClass = geometryMatcher.getClass();
+        if (matcherClass != MinimumDistanceMatcher.class &&
+            matcherClass != CentroidDistanceMatcher.class) return false;
+        if (!(maxDistance > 0.0) || Double.isInfinite(maxDistance)) return false;
+        return isPointCollection(source) && isPointCollection(target);
+    }
+
+    /**
+     * Returns true if the point in polygon join can be used : the
+     * geometry matcher is a plain IsWithinMatcher, all source geometries are
+     * non empty points, all target geometries are polygonal, and a source
+     * matches a single target, so that N:M matching (which may match a point
+     * on the boundary between two polygons with their union) is not used.
+     */
+    private boolean isPointInPolygonMatching(boolean singleTarget) {
+        if (!singleTarget || geometryMatcher.getClass() != IsWithinMatcher.class) return false;
+        for (Feature f : target) {
+            if (!(f.getGeometry() instanceof Polygonal)) return false;
+        }
+        return isPointCollection(source);
+    }
+
+    private static boolean isPointCollection(Collection<Feature> features) {
+        for (Feature f : features) {
+            Geometry g = f.getGeometry();
+            if (!(g instanceof Point) || g.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Target points stored in primitive arrays and bucketed in a uniform
+     * grid whose cells are at least maxDistance wide, so that the targets
+     * of a source point are in the (at most) 3 x 3 cells around it.
+     * Scores are the ones of MinimumDistanceMatcher, computed with the same
+     * arithmetic as Coordinate.distance. PointGrid is immutable once built
+     * and can be used by several threads.
+     */
+    private static final class PointGrid {
+
+        private final double maxDistance;
+        private final double minX, minY, cellSize;
+        private final int nx, ny;
+        // targets and their coordinates, sorted by cell
+        private final Feature[] features;
+        private final double[] xs, ys;
+        // index of the first target of each cell (plus total size)
+        private final int[] cellStart;
+
+        PointGrid(Collection<Feature> targets, double maxDistance) {
+            this.maxDistance = maxDistance;
+            int n = targets.size();
+            Feature[] unsorted = targets.toArray(new Feature[0]);
+            Envelope extent = new Envelope();
+            for (Feature f : unsorted) {
+                extent.expandToInclude(((Point)f.getGeometry()).getCoordinate());
+            }
+            if (extent.isNull()) extent.init(0, 0, 0, 0);
+            minX = extent.getMinX();
+            minY = extent.getMinY();
+            // cells are not smaller than maxDistance, and big enough to keep
+            // the number of cells in the order of the number of targets
+            double width = extent.getWidth();
+            double height = extent.getHeight();
+            cellSize = Math.max(maxDistance, Math.max(
+                    Math.sqrt(width * height / Math.max(1, n)),
+                    Math.max(width, height) / Math.max(1, n)));
+            nx = (int)(width / cellSize) + 1;
+            ny = (int)(height / cellSize) + 1;
+            // counting sort of the targets by cell
+            int[] cells = new int[n];
+            cellStart = new int[nx * ny + 1];
+            for (int i = 0 ; i < n ; i++) {
+                Point p = (Point)unsorted[i].getGeometry();
+                cells[i] = cell(column(p.getX()), row(p.getY()));
+                cellStart[cells[i] + 1]++;
+            }
+            for (int c = 0 ; c < nx * ny ; c++) cellStart[c+1] += cellStart[c];
+            int[] next = Arrays.copyOf(cellStart, nx * ny);
+            features = new Feature[n];
+            xs = new double[n];
+            ys = new double[n];
+            for (int i = 0 ; i < n ; i++) {
+                int j = next[cells[i]]++;
+                Point p = (Point)unsorted[i].getGeometry();
+                features[j] = unsorted[i];
+                xs[j] = p.getX();
+                ys[j] = p.getY();
+            }
+        }
+
+        private int column(double x) {
+            return (int)Math.max(0, Math.min(nx - 1, Math.floor((x - minX) / cellSize)));
+        }
+
+        private int row(double y) {
+            return (int)Math.max(0, Math.min(ny - 1, Math.floor((y - minY) / cellSize)));
+        }
+
+        private int cell(int column, int row) {
+            return row * nx + column;
+        }
+
+        List<Match> match(int i, Feature f1) {
+            List<Match> matches = new ArrayList<>();
+            Point p = (Point)f1.getGeometry();
+            double x = p.getX();
+            double y = p.getY();
+            // cells outside the grid are clamped to the border cells, which
+            // may add a few candidates but never miss one
+            int c0 = column(x - maxDistance), c1 = column(x + maxDistance);
+            int r0 = row(y - maxDistance), r1 = row(y + maxDistance);
+            for (int r = r0 ; r <= r1 ; r++) {
+                for (int c = c0 ; c <= c1 ; c++) {
+                    int cell = cell(c, r);
+                    for (int j = cellStart[cell], end = cellStart[cell+1] ; j < end ; j++) {
+                        // if matching_layer = reference_layer don't try to
+                        // match f1 with itself
+                        if (features[j] == f1) continue;
+                        double dx = x - xs[j];
+                        double dy = y - ys[j];
+                        double dist = Math.sqrt(dx * dx + dy * dy);
+                        if (dist > maxDistance) continue;
+                        double score = 1.0 - dist / maxDistance;
+                        if (score > 0.0) matches.add(new Match(f1, features[j], score));
+                    }
+                }
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * Matches of source points with the target polygons they are within.
+     * The candidate polygons of a point are found with an index of the
+     * target polygons, and the point is located with a locator created once
+     * per polygon : an IndexedPointInAreaLocator if the envelope of the
+     * polygon contains more than INDEXED_LOCATOR_THRESHOLD source points, a
+     * SimplePointInAreaLocator otherwise. Scores are the ones of
+     * IsWithinMatcher (1.0 for points in the polygon interior).
+     * Matches are computed source by source and match can be called by
+     * several threads.
+     */
+    private final class PointInPolygonJoin {
+
+        // minimum number of candidate points for which building an
+        // IndexedPointInAreaLocator is worth it
+        private static final int INDEXED_LOCATOR_THRESHOLD = 16;
+
+        private final STRtree pointIndex = new STRtree();
+        private final STRtree polygonIndex = new STRtree();
+        private final Map<Feature,PointOnGeometryLocator> locators = new ConcurrentHashMap<>();
+
+        PointInPolygonJoin(Collection<Feature> points, Collection<Feature> polygons) {
+            for (Feature f : points) {
+                pointIndex.insert(f.getGeometry().getEnvelopeInternal(), f);
+            }
+            for (Feature f : polygons) {
+                if (!f.getGeometry().isEmpty()) {
+                    polygonIndex.insert(f.getGeometry().getEnvelopeInternal(), f);
+                }
+            }
+            // indexes are built before being queried by several threads
+            pointIndex.build();
+            polygonIndex.build();
+        }
+
+        List<Match> match(int i, Feature f1) {
+            List<Match> matches = new ArrayList<>();
+            Coordinate c = f1.getGeometry().getCoordinate();
+            for (Object item : polygonIndex.query(new Envelope(c))) {
+                Feature f2 = (Feature)item;
+                if (locators.computeIfAbsent(f2, this::locator).locate(c) == Location.INTERIOR) {
+                    matches.add(new Match(f1, f2, 1.0));
+                }
+            }
+            return matches;
+        }
+
+        private PointOnGeometryLocator locator(Feature polygon) {
+            Geometry g = polygon.getGeometry();
+            return pointIndex.query(g.getEnvelopeInternal()).size() > INDEXED_LOCATOR_THRESHOLD ?
+                    new IndexedPointInAreaLocator(g) : new SimplePointInAreaLocator(g);
+        }
+    }
+
+    /**
+     * Tiles of the target polygons having more than maxVertices points.
+     * Each polygon is cut into 4 along the median lines of its envelope,
+     * and pieces still having more than maxVertices points are cut again.
+     * Tiles cover the polygon and share boundaries only. The tiles of each
+     * polygon are indexed in their own STRtree.
+     * Subdivision is immutable once built and can be used by several threads.
+     */
+    private final class Subdivision {
+
+        private final Map<Feature,STRtree> tiles = new HashMap<>();
+
+        Subdivision(Collection<Feature> targets, int maxVertices) {
+            for (Feature f : targets) {
+                Geometry g = f.getGeometry();
+                if (!(g instanceof Polygonal) || g.getNumPoints() <= maxVertices) continue;
+                STRtree tree = new STRtree();
+                subdivide(g, maxVertices, tree, 0);
+                tree.build();
+                tiles.put(f, tree);
+            }
+        }
+
+        private void subdivide(Geometry g, int maxVertices, STRtree tree, int depth) {
+            if (g.getNumPoints() <= maxVertices || depth >= MAX_SUBDIVISION_DEPTH) {
+                tree.insert(g.getEnvelopeInternal(), g);
+                return;
+            }
+            Envelope env = g.getEnvelopeInternal();
+            double midX = env.getMinX() + env.getWidth() / 2.0;
+            double midY = env.getMinY() + env.getHeight() / 2.0;
+            Envelope[] quadrants = new Envelope[]{
+                new Envelope(env.getMinX(), midX, env.getMinY(), midY),
+                new Envelope(midX, env.getMaxX(), env.getMinY(), midY),
+                new Envelope(env.getMinX(), midX, midY, env.getMaxY()),
+                new Envelope(midX, env.getMaxX(), midY, env.getMaxY())
+            };
+            for (Envelope quadrant : quadrants) {
+                Geometry clip = OverlayNGRobust.overlay(g,
+                        g.getFactory().toGeometry(quadrant), OverlayNG.INTERSECTION);
+                // keep polygonal parts only (pieces touching the quadrant
+                // boundary may produce lines or points)
+                Geometry tile = g.getFactory().buildGeometry(PolygonExtracter.getPolygons(clip));
+                if (!tile.isEmpty()) subdivide(tile, maxVertices, tree, depth + 1);
+            }
+        }
+
+        /**
+         * Returns the score of f1 with f2, computed from the tiles of f2
+         * intersecting env (the envelope of f1 expanded by the maximum
+         * distance) if f2 has been subdivided.
+         */
+        double match(Feature f1, Feature f2, Envelope env) throws Exception {
+            STRtree tree = tiles.get(f2);
+            if (tree == null) return geometryMatcher.match(f1, f2, context);
+            List<Geometry> near = new ArrayList<>();
+            for (Object tile : tree.query(env)) near.add((Geometry)tile);
+            return geometryMatcher.matchTiles(f1.getGeometry(), f2.getGeometry(), near, context);
+        }
+    }
+
+    /**
+     * Returns true if the geometry matcher is an equality matcher for which
+     * candidates can be found by an EqualityJoin : exact (or normalized
+     * exact) equality, or equality with a finite coordinate tolerance, and
+     * a source matches a single target, so that N:M matching (which may match
+     * a source with the union of several targets) is not used.
+     */
+    private boolean isEqualityMatching(boolean singleTarget) {
+        if (!singleTarget) return false;
+        Class<?> matcherClass = geometryMatcher.getClass();
+        if (matcherClass == EqualsWithCoordinateToleranceMatcher.class) {
+            double tolerance = geometryMatcher.getMaximumDistance();
+            return tolerance > 0.0 && !Double.isInfinite(tolerance);
+        }
+        return matcherClass == EqualsExactGeom2dMatcher.class ||
+               matcherClass == EqualsExactGeom3dMatcher.class ||
+               matcherClass == EqualsNormalizedGeom2dMatcher.class ||
+               matcherClass == EqualsNormalizedGeom3dMatcher.class;
+    }
+
+    /**
+     * Hash join of source and target features for equality matchers.
+     * A hash code is computed once for each feature from its geometry type
+     * and coordinates read from the coordinate sequences of the geometry, or
+     * of its normalized copy for normalized and tolerance matchers :
+     * <ul>
+     *     <li>exact matchers hash all x and y, plus z for 3D matchers</li>
+     *     <li>the tolerance matcher hashes the number of points and the grid
+     *     cell (of size tolerance) of the first normalized vertex. Matching
+     *     geometries have first vertices closer than tolerance, in adjacent
+     *     cells, so that targets of a source are looked up in the 3 x 3
+     *     cells around its first vertex.</li>
+     * </ul>
+     * Targets are bucketed by hash code, and the targets found for a source
+     * are confirmed by the geometry matcher, after the envelope test of the
+     * spatial index, so that matches are the same as with the spatial index
+     * in 1:1 and 1:N modes (the N:M step matching a source with the union of
+     * its candidates is not supported and uses the spatial index).
+     * Empty geometries are not matched, as with the spatial index.
+     * EqualityJoin is immutable once built and can be used by several threads.
+     */
+    private final class EqualityJoin {
+
+        private final boolean normalized;
+        private final boolean threeD;
+        // grid cell size of the tolerance matcher, 0 for exact matchers
+        private final double tolerance;
+        private final Map<Long,List<Feature>> buckets = new HashMap<>();
+
+        EqualityJoin(Collection<Feature> targets) {
+            Class<?> matcherClass = geometryMatcher.getClass();
+            tolerance = matcherClass == EqualsWithCoordinateToleranceMatcher.class ?
+                    geometryMatcher.getMaximumDistance() : 0.0;
+            normalized = tolerance > 0.0 ||
+                         matcherClass == EqualsNormalizedGeom2dMatcher.class ||
+                         matcherClass == EqualsNormalizedGeom3dMatcher.class;
+            threeD = matcherClass == EqualsExactGeom3dMatcher.class ||
+                     matcherClass == EqualsNormalizedGeom3dMatcher.class;
+            for (Feature f : targets) {
+                Geometry g = f.getGeometry();
+                if (g.isEmpty()) continue;
+                long key;
+                if (tolerance > 0.0) {
+                    Geometry canonical = context.getNormalizedGeometry(g);
+                    Coordinate c = canonical.getCoordinate();
+                    key = cellHash(canonical, cell(c.x), cell(c.y));
+                } else {
+                    key = hash(g);
+                }
+                buckets.computeIfAbsent(key, k -> new ArrayList<>(1)).add(f);
+            }
+        }
+
+        private long hash(Geometry g) {
+            Geometry canonical = normalized ? context.getNormalizedGeometry(g) : g;
+            final long[] h = new long[]{canonical.getGeometryType().hashCode()};
+            canonical.apply(new CoordinateSequenceFilter() {
+                public void filter(CoordinateSequence seq, int i) {
+                    // 0.0 and -0.0 are equal for equalsExact
+                    h[0] = mix(h[0], Double.doubleToLongBits(seq.getX(i) + 0.0));
+                    h[0] = mix(h[0], Double.doubleToLongBits(seq.getY(i) + 0.0));
+                    // z values are compared on their bits by 3D matchers
+                    if (threeD) h[0] = mix(h[0], Double.doubleToLongBits(seq.getZ(i)));
+                }
+                public boolean isDone() {
+                    return false;
+                }
+                public boolean isGeometryChanged() {
+                    return false;
+                }
+            });
+            return h[0];
+        }
+
+        private long cell(double ordinate) {
+            return (long)Math.floor(ordinate / tolerance);
+        }
+
+        private long cellHash(Geometry canonical, long column, long row) {
+            long h = canonical.getGeometryType().hashCode();
+            h = mix(h, canonical.getNumGeometries());
+            h = mix(h, canonical.getNumPoints());
+            h = mix(h, column);
+            return mix(h, row);
+        }
+
+        private long mix(long h, long bits) {
+            h = (h ^ bits) * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 32);
+        }
+
+        List<Match> match(int i, Feature f1) throws Exception {
+            List<Match> matches = new ArrayList<>();
+            Geometry g1 = f1.getGeometry();
+            if (g1.isEmpty()) return matches;
+            // query envelope of the spatial index path : the matcher may
+            // accept targets just outside it because of rounding errors
+            Envelope env = new Envelope(g1.getEnvelopeInternal());
+            env.expandBy(tolerance);
+            if (tolerance > 0.0) {
+                Geometry canonical = context.getNormalizedGeometry(g1);
+                Coordinate c = canonical.getCoordinate();
+                long column = cell(c.x), row = cell(c.y);
+                // the 9 keys may share a bucket if their hash codes collide
+                List<List<Feature>> visited = new ArrayList<>(9);
+                for (long r = row - 1 ; r <= row + 1 ; r++) {
+                    for (long col = column - 1 ; col <= column + 1 ; col++) {
+                        List<Feature> bucket = buckets.get(cellHash(canonical, col, r));
+                        if (bucket == null || visited.contains(bucket)) continue;
+                        visited.add(bucket);
+                        match(f1, env, bucket, matches);
+                    }
+                }
+            } else {
+                match(f1, env, buckets.get(hash(g1)), matches);
+            }
+            return matches;
+        }
+
+        private void match(Feature f1, Envelope env, List<Feature> candidates,
+                           List<Match> matches) throws Exception {
+            if (candidates == null) return;
+            for (Feature f2 : candidates) {
+                // if matching_layer = reference_layer don't try to match f1 with itself
+                if (f2 == f1) continue;
+                if (!env.intersects(f2.getGeometry().getEnvelopeInternal())) continue;
+                double score = geometryMatcher.match(f1, f2, context);
+                if (score > 0.0) matches.add(new Match(f1, f2, score));
+            }
+        }
+    }
+
+    /**
+     * Finds the target candidates of source features. Each thread uses its
+     * own CandidateFinder, which may keep state between consecutive calls.
+     */
+    private interface CandidateFinder {
+
+        /**
+         * Returns a new list containing the target features whose envelope
+         * intersects env, the query envelope of the i-th source feature, in
+         * the order they are returned by a query of the target index.
+         */
+        List<Feature> find(int i, Envelope env);
+    }
+
+    /**
+     * Caches the result of an index query on a window larger than the query
+     * envelope, so that the following queries inside this window, frequent
+     * when source features are spatially sorted, filter the cached candidates
+     * instead of querying the index again.
+     * The window is the query envelope expanded by a fixed margin, so that a
+     * large source feature does not produce a huge window whose candidates
+     * would be filtered by all the following sources : query envelopes
+     * larger than the margin are queried directly, and the margin is halved
+     * each time a window returns more than MAX_CANDIDATES candidates.
+     */
+    private static final class CandidateWindow implements CandidateFinder {
+
+        private static final int MAX_CANDIDATES = 512;
+
+        private final STRtree index;
+        private double margin;
+        private Envelope window;
+        private List<?> candidates;
+
+        CandidateWindow(STRtree index, double margin) {
+            this.index = index;
+            this.margin = margin;
+        }
+
+        /**
+         * Returns the margin used to build windows : the median size of the
+         * source query envelopes, or the mean spacing of the indexed targets
+         * if it is larger (point sources with a null distance have empty
+         * query envelopes).
+         */
+        static double margin(List<Feature> sources, double maxDistance, STRtree index) {
+            double[] sizes = new double[sources.size()];
+            int n = 0;
+            for (Feature f : sources) {
+                Envelope env = f.getGeometry().getEnvelopeInternal();
+                if (!env.isNull()) sizes[n++] = Math.max(env.getWidth(), env.getHeight()) + 2 * maxDistance;
+            }
+            double median = 0.0;
+            if (n > 0) {
+                Arrays.sort(sizes, 0, n);
+                median = sizes[n / 2];
+            }
+            double spacing = 0.0;
+            if (index.size() > 0) {
+                Envelope extent = (Envelope)index.getRoot().getBounds();
+                spacing = extent.getArea() > 0.0 ?
+                        Math.sqrt(extent.getArea() / index.size()) :
+                        Math.max(extent.getWidth(), extent.getHeight()) / index.size();
+            }
+            return Math.max(median, spacing);
+        }
+
+        public List<Feature> find(int i, Envelope env) {
+            List<?> items;
+            if (window != null && window.covers(env)) {
+                items = candidates;
+            } else if (Math.max(env.getWidth(), env.getHeight()) > margin) {
+                // larger than usual : the current window is kept for the
+                // following source features
+                items = index.query(env);
+            } else {
+                window = new Envelope(env);
+                window.expandBy(margin);
+                candidates = index.query(window);
+                if (candidates.size() > MAX_CANDIDATES) margin /= 2.0;
+                items = candidates;
+            }
+            List<Feature> result = new ArrayList<>();
+            for (Object item : items) {
+                if (envelopeOf(item).intersects(env)) result.add(featureOf(item));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Source features indexed in an STRtree with their envelope expanded by
+     * the maximum distance. Source features are listed in the order of the
+     * tree leaves, so that the features of a leaf node are contiguous.
+     */
+    private static final class SourceTree {
+
+        // source features in the order of the tree leaves, followed by
+        // features with an empty geometry, which are not in the tree
+        final List<Feature> sources = new ArrayList<>();
+        // leaf nodes of the source tree
+        final List<AbstractNode> leaves = new ArrayList<>();
+        // index of the first source of each leaf, plus the number of sources
+        // in the tree
+        final int[] leafStart;
+
+        SourceTree(Collection<Feature> features, double maxDistance) {
+            STRtree tree = new STRtree();
+            List<Feature> empty = new ArrayList<>();
+            for (Feature f : features) {
+                Envelope env = new Envelope(f.getGeometry().getEnvelopeInternal());
+                if (env.isNull()) {
+                    empty.add(f);
+                    continue;
+                }
+                env.expandBy(maxDistance);
+                tree.insert(env, f);
+            }
+            collectLeaves(tree.getRoot());
+            leafStart = new int[leaves.size() + 1];
+            for (int i = 0 ; i < leaves.size() ; i++) {
+                leafStart[i] = sources.size();
+                for (Object child : leaves.get(i).getChildBoundables()) {
+                    sources.add((Feature)((ItemBoundable)child).getItem());
+                }
+            }
+            leafStart[leaves.size()] = sources.size();
+            sources.addAll(empty);
+        }
+
+        private void collectLeaves(AbstractNode node) {
+            if (node.getLevel() == 0) {
+                if (!node.getChildBoundables().isEmpty()) leaves.add(node);
+            } else {
+                for (Object child : node.getChildBoundables()) {
+                    collectLeaves((AbstractNode)child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds candidates by traversing the target tree once for all the source
+     * features of a leaf node of the source tree : target nodes are pruned
+     * with the source leaf envelope, and target items are compared with each
+     * source envelope. The candidates of the whole leaf are kept until a
+     * source of another leaf is asked for.
+     */
+    private static final class TreeJoinFinder implements CandidateFinder {
+
+        private final SourceTree sourceTree;
+        private final AbstractNode targetRoot;
+        // current source leaf and candidates of its features
+        private int leafStart = -1;
+        private int leafEnd = -1;
+        private List<List<Feature>> leafCandidates;
+
+        TreeJoinFinder(SourceTree sourceTree, STRtree target) {
+            this.sourceTree = sourceTree;
+            this.targetRoot = target.getRoot();
+        }
+
+        public List<Feature> find(int i, Envelope env) {
+            // features with an empty geometry have no candidate
+            if (i >= sourceTree.leafStart[sourceTree.leaves.size()]) return new ArrayList<>();
+            if (i < leafStart || i >= leafEnd) {
+                int leaf = Arrays.binarySearch(sourceTree.leafStart, i);
+                if (leaf < 0) leaf = -leaf - 2;
+                join(leaf);
+            }
+            return leafCandidates.get(i - leafStart);
+        }
+
+        private void join(int leaf) {
+            AbstractNode sourceLeaf = sourceTree.leaves.get(leaf);
+            leafStart = sourceTree.leafStart[leaf];
+            leafEnd = sourceTree.leafStart[leaf+1];
+            List<Envelope> envelopes = new ArrayList<>();
+            leafCandidates = new ArrayList<>();
+            for (Object child : sourceLeaf.getChildBoundables()) {
+                envelopes.add((Envelope)((Boundable)child).getBounds());
+                leafCandidates.add(new ArrayList<>());
+            }
+            join(targetRoot, (Envelope)sourceLeaf.getBounds(), envelopes);
+        }
+
+        // depth-first traversal of the target tree, visiting children in the
+        // same order as STRtree.query
+        private void join(AbstractNode targetNode, Envelope leafEnvelope, List<Envelope> envelopes) {
+            for (Object child : targetNode.getChildBoundables()) {
+                Boundable boundable = (Boundable)child;
+                Envelope env = (Envelope)boundable.getBounds();
+                if (!env.intersects(leafEnvelope)) continue;
+                if (boundable instanceof AbstractNode) {
+                    join((AbstractNode)boundable, leafEnvelope, envelopes);
+                } else if (boundable instanceof ItemBoundable) {
+                    Feature f = featureOf(((ItemBoundable)boundable).getItem());
+                    for (int k = 0 ; k < envelopes.size() ; k++) {
+                        if (env.intersects(envelopes.get(k))) leafCandidates.get(k).add(f);
+                    }
+                }
+            }
+        }
+    }
+
     private STRtree indexFeatureCollection(Collection<Feature> collection) {
+        return indexFeatureCollection(collection, false);
+    }
+
+    /**
+     * Indexes features with their envelope, or, if parts is true, indexes
+     * each non empty component of multi-geometries as a Part.
+     */
+    private STRtree indexFeatureCollection(Collection<Feature> collection, boolean parts) {
         STRtree index = new STRtree();
         for (Feature f : collection) {
-            index.insert(f.getGeometry().getEnvelopeInternal(), f);
+            Geometry g = f.getGeometry();
+            if (parts && g.getNumGeometries() > 1) {
+                for (int i = 0 ; i < g.getNumGeometries() ; i++) {
+                    Geometry component = g.getGeometryN(i);
+                    if (component.isEmpty()) continue;
+                    index.insert(component.getEnvelopeInternal(),
+                            new Part(f, component.getEnvelopeInternal()));
+                }
+            } else {
+                index.insert(g.getEnvelopeInternal(), f);
+            }
         }
         return index;
     }
+
+    /**
+     * Component of a target feature inserted in the index in part indexing
+     * mode.
+     */
+    private static final class Part {
+        final Feature feature;
+        final Envelope envelope;
+        Part(Feature feature, Envelope envelope) {
+            this.feature = feature;
+            this.envelope = envelope;
+        }
+    }
+
+    /**
+     * Returns the feature of an index item (a Feature or a Part).
+     */
+    private static Feature featureOf(Object item) {
+        return item instanceof Part ? ((Part)item).feature : (Feature)item;
+    }
+
+    /**
+     * Returns the envelope of an index item (a Feature or a Part).
+     */
+    private static Envelope envelopeOf(Object item) {
+        return item instanceof Part ? ((Part)item).envelope :
+                ((Feature)item).getGeometry().getEnvelopeInternal();
+    }
+
+    /**
+     * Returns the features of a list of index items.
+     */
+    private static List<Feature> features(List<?> items) {
+        List<Feature> features = new ArrayList<>(items.size());
+        for (Object item : items) features.add(featureOf(item));
+        return features;
+    }
     
     private SortedMap<String,Collection<Feature>> indexFeatureCollection(Collection<Feature> collection, String attribute) {
         SortedMap<String,Collection<Feature>> map = new TreeMap<>();
@@ -292,47 +1484,10 @@ public class FeatureCollectionMatcher {
         return UnaryUnionOp.union(geom);
     }
     
-    private MatchMap attributeMatching(boolean singleSource, boolean singleTarget) throws Exception {
-        String sourceAttribute = attributeMatcher.getSourceAttribute();
-        String targetAttribute = attributeMatcher.getTargetAttribute();
-        Rule sourceRule = attributeMatcher.getSourceRule();
-        Rule targetRule = attributeMatcher.getTargetRule();
+    private AbstractMatchMap attributeMatching(boolean singleSource, boolean singleTarget) throws Exception {
         // If geometryMatcher is null, a simple join will be done.
         if (geometryMatcher == null && attributeMatcher != null) {
-            monitor.report("Attribute matching : indexing features");
-            Index index = attributeMatcher.createIndex(target);
-            int count = 0;
-            int total = source.size();
-            monitor.report("Attribute matching : matching feature attributes");
-            for (Feature f1 : source) {
-                String sourceValue = sourceRule.transform(f1.getString(sourceAttribute));
-                //System.out.println("sourceValue : " + sourceValue);
-                Set<Feature> candidates = 
-                    index.query(sourceValue);
-                if (candidates == null || candidates.isEmpty()) {
-                    continue;
-                }
-                else if (Double.isNaN(attributeMatcher.getMaximumDistance())) {
-                    for (Feature f2 : candidates) {
-                        matchMap.add(new Match(f1, f2, 1.0));
-                    }
-                }
-                // In the case where a BKTree is used, there is room for 
-                // optimizition because distances are already computed by the
-                // BKTree query method
-                else {
-                    for (Feature f2 : candidates) {
-                        double d = attributeMatcher.match(f1, f2, null);
-                        matchMap.add(new Match(f1, f2, d));
-                    }
-                }
-                if (monitor.isCancelRequested()) {
-                    interrupted = true;
-                    return matchMap;
-                }
-                monitor.report(++count, total, "features");
-            }            
-            // index attribute data
+            attributeMatching(null);
         }
         // If a geometry matching has already been done, attribute matching
         // use the resulting MatchMap from the geometry matching process 
@@ -342,11 +1497,9 @@ public class FeatureCollectionMatcher {
             int count = 0;
             int total = allMatches.size();
             for (Match m : allMatches) {
-                String srcA = sourceRule.transform(m.getSource().getString(sourceAttribute));
-                String tgtA = targetRule.transform(m.getTarget().getString(targetAttribute));
-                double newScore = m.combineScore(attributeMatcher.match(srcA, tgtA, null));
-                if (newScore > 0.0) {
-                    new_matches.add(new Match(m.getSource(), m.getTarget(), newScore));
+                Match newMatch = combineAttributeScore(m);
+                if (newMatch != null) {
+                    new_matches.add(newMatch);
                 }
                 if (monitor.isCancelRequested()) {
                     interrupted = true;
@@ -363,4 +1516,80 @@ public class FeatureCollectionMatcher {
         return matchMap;
     }
 
+    /**
+     * Returns a new Match combining the geometric score of m with the score
+     * of the attribute matcher, or null if the combined score is null.
+     */
+    private Match combineAttributeScore(Match m) throws Exception {
+        String srcA = attributeMatcher.getSourceRule().transform(
+                m.getSource().getString(attributeMatcher.getSourceAttribute()));
+        String tgtA = attributeMatcher.getTargetRule().transform(
+                m.getTarget().getString(attributeMatcher.getTargetAttribute()));
+        double newScore = m.combineScore(attributeMatcher.match(srcA, tgtA, null));
+        return newScore > 0.0 ? new Match(m.getSource(), m.getTarget(), newScore) : null;
+    }
+
+    /**
+     * Applies {@link #combineAttributeScore(Match)} to matches if an
+     * attribute matcher is used.
+     */
+    private List<Match> combineAttributeScores(List<Match> matches) throws Exception {
+        if (attributeMatcher == null) return matches;
+        List<Match> combined = new ArrayList<>(matches.size());
+        for (Match m : matches) {
+            Match newMatch = combineAttributeScore(m);
+            if (newMatch != null) combined.add(newMatch);
+        }
+        return combined;
+    }
+
+    /**
+     * Joins source and target features on their attribute values.
+     * If consumer is null, matches are added to the MatchMap, else, they are
+     * pushed to consumer.
+     */
+    private void attributeMatching(Consumer<Match> consumer) throws Exception {
+        String sourceAttribute = attributeMatcher.getSourceAttribute();
+        Rule sourceRule = attributeMatcher.getSourceRule();
+        monitor.report("Attribute matching : indexing features");
+        Index index = attributeMatcher.createIndex(target);
+        int count = 0;
+        int total = source.size();
+        monitor.report("Attribute matching : matching feature attributes");
+        for (Feature f1 : source) {
+            String sourceValue = sourceRule.transform(f1.getString(sourceAttribute));
+            //System.out.println("sourceValue : " + sourceValue);
+            Set<Feature> candidates = 
+                index.query(sourceValue);
+            if (candidates == null || candidates.isEmpty()) {
+                continue;
+            }
+            List<Match> matches = new ArrayList<>(candidates.size());
+            if (Double.isNaN(attributeMatcher.getMaximumDistance())) {
+                for (Feature f2 : candidates) {
+                    matches.add(new Match(f1, f2, 1.0));
+                }
+            }
+            // In the case where a BKTree is used, there is room for 
+            // optimizition because distances are already computed by the
+            // BKTree query method
+            else {
+                for (Feature f2 : candidates) {
+                    double d = attributeMatcher.match(f1, f2, null);
+                    matches.add(new Match(f1, f2, d));
+                }
+            }
+            if (consumer == null) {
+                for (Match match : matches) matchMap.add(match);
+            } else {
+                push(matches, consumer);
+            }
+            if (monitor.isCancelRequested()) {
+                interrupted = true;
+                return;
+            }
+            monitor.report(++count, total, "features");
+        }
+    }
+
 }
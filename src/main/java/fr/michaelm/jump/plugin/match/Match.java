@@ -104,6 +104,20 @@ public class Match implements Comparable<Match> {
         return false;
     }
     
+    /**
+     * Hash code consistent with {@link #equals(Object)} : it depends on the
+     * source feature ID, the target feature ID and the matching score.
+     */
+    public int hashCode() {
+        // 0.0 and -0.0 are equal but have different bit patterns
+        long bits = score == 0.0 ? 0L : Double.doubleToLongBits(score);
+        int hash = 17;
+        hash = 31 * hash + source.getID();
+        hash = 31 * hash + target.getID();
+        hash = 31 * hash + (int)(bits ^ (bits >>> 32));
+        return hash;
+    }
+    
     public String toString() {
         return "Match " + source.getID() + " and " + target.getID() + " with score " + score; 
     }
@@ -24,37 +24,46 @@ package fr.michaelm.jump.plugin.match;
 
 import com.vividsolutions.jump.feature.Feature;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
- * A Map accumulating information about matches between two sets of features.
+ * A Map accumulating information about matches between two sets of features,
+ * stored as Match objects.
  *
- * The MatchMap will store every single Match in a Tree Map ordering all 
- * possible matches from the best score to the worst score. For matches
- * returning the same score, ordering is determined by the 
- * {@link Match#compareTo(Match other)} method.
+ * During the feeding phase, matches are just appended to an unsorted buffer.
+ * The map is sorted on demand, by a single parallel sort, the first time a
+ * get* or filter method is called after one or several add calls.
+ * Identical matches (see {@link Match#equals(Object)}) are only kept once.
+ * Removed matches are also recorded in a buffer, and are dropped from the
+ * map by the next sort, so that a sequence of removals costs a single
+ * rebuild of the sorted array and of the source and target maps.
+ *
+ * MatchMap is not thread-safe.
  *
  * @author Michaël Michaud
  */
-public class MatchMap {
-    
-    private final SortedSet<Match> EMPTY_SET = Collections.unmodifiableSortedSet(new TreeSet<Match>());
-        
-    private final Map<Feature,TreeSet<Match>> sourceMap = new HashMap<>();
-    private final Map<Feature,TreeSet<Match>> targetMap = new HashMap<>();
-    
-    //TODO : to improve performance, instead of maintaining 3 ordered map during 
-    // the feeding (at each add call), sort the map on demand, keeping track of 
-    // the ordering state (sorted after a get* or a filter call, unsorted after 
-    // a add call.
-    boolean sorted;
+public class MatchMap extends AbstractMatchMap {
+    
+    // matches added since the last sort
+    private final List<Match> unsortedMatches = new ArrayList<>();
+    // matches removed since the last sort
+    private final Set<Match> removedMatches = new HashSet<>();
+    // all the matches, sorted, as of the last sort
+    private Match[] sortedMatches = new Match[0];
+    
+    // matches of each source and of each target feature, as of the last sort
+    private final Map<Feature,MatchSet> sourceMap = new HashMap<>();
+    private final Map<Feature,MatchSet> targetMap = new HashMap<>();
+    
+    // ordering state : sorted after a get* or a filter call, unsorted after 
+    // an add or a remove call.
+    boolean sorted = true;
 
     /**
      * Construct a new MatchMap.
@@ -67,33 +76,76 @@ public class MatchMap {
      * one match only (so that the test to keep the best match only is removed) 
      */
     public void add(Match m) {
-        TreeSet<Match> set = sourceMap.get(m.getSource());
-        if (set == null) {
-            set = new TreeSet<>();
-            sourceMap.put(m.getSource(), set);
+        unsortedMatches.add(m);
+        removedMatches.remove(m);
+        sorted = false;
+    }
+    
+    /**
+     * Sort the matches added since the last sort with the previous ones,
+     * drop the matches removed since the last sort, and group them by source
+     * feature and by target feature.
+     */
+    private void sort() {
+        if (sorted) return;
+        Match[] matches = new Match[sortedMatches.length + unsortedMatches.size()];
+        System.arraycopy(sortedMatches, 0, matches, 0, sortedMatches.length);
+        for (int i = 0 ; i < unsortedMatches.size() ; i++) {
+            matches[sortedMatches.length + i] = unsortedMatches.get(i);
         }
-        set.add(m);
-        set = targetMap.get(m.getTarget());
-        if (set == null) {
-            set = new TreeSet<>();
-            targetMap.put(m.getTarget(), set);
+        // sortedMatches is still sorted if there are only removals
+        if (!unsortedMatches.isEmpty()) Arrays.parallelSort(matches);
+        unsortedMatches.clear();
+        // identical matches are contiguous once sorted
+        int n = 0;
+        for (Match m : matches) {
+            if (removedMatches.contains(m)) continue;
+            if (n == 0 || m.compareTo(matches[n-1]) != 0) matches[n++] = m;
         }
-        set.add(m);
+        removedMatches.clear();
+        sortedMatches = n == matches.length ? matches : Arrays.copyOf(matches, n);
+        index();
+        sorted = true;
+    }
+    
+    /**
+     * Build source and target maps from sortedMatches. As sortedMatches is
+     * sorted, each group of matches is sorted.
+     */
+    private void index() {
+        Map<Feature,List<Match>> bySource = new HashMap<>();
+        Map<Feature,List<Match>> byTarget = new HashMap<>();
+        for (Match m : sortedMatches) {
+            bySource.computeIfAbsent(m.getSource(), k -> new ArrayList<>()).add(m);
+            byTarget.computeIfAbsent(m.getTarget(), k -> new ArrayList<>()).add(m);
+        }
+        sourceMap.clear();
+        for (Map.Entry<Feature,List<Match>> entry : bySource.entrySet()) {
+            sourceMap.put(entry.getKey(), toMatchSet(entry.getValue()));
+        }
+        targetMap.clear();
+        for (Map.Entry<Feature,List<Match>> entry : byTarget.entrySet()) {
+            targetMap.put(entry.getKey(), toMatchSet(entry.getValue()));
+        }
+    }
+    
+    private static MatchSet toMatchSet(List<Match> sortedList) {
+        return new MatchSet(sortedList.toArray(new Match[0]), 0, sortedList.size());
     }
     
     /**
      * Get the whole match Set.
      */
-    public Set<Match> getAllMatches() {
-        Set<Match> matches = new HashSet<>();
-        for (Feature feature : sourceMap.keySet()) matches.addAll(sourceMap.get(feature));
-        return matches;
+    public SortedSet<Match> getAllMatches() {
+        sort();
+        return new MatchSet(sortedMatches, 0, sortedMatches.length);
     }
     
     /**
      * Get the set of features matching one or more features.
      */
     public Set<Feature> getSourceFeatures() {
+        sort();
         return sourceMap.keySet();
     }
     
@@ -101,6 +153,7 @@ public class MatchMap {
      * Get the set of features being matched by one or more features.
      */
     public Set<Feature> getTargetFeatures() {
+        sort();
         return targetMap.keySet();
     }
     
@@ -108,6 +161,7 @@ public class MatchMap {
      * Get Matches recorded for this source Feature.
      */
     public SortedSet<Match> getMatchesForSourceFeature(Feature f) {
+        sort();
         SortedSet<Match> matches = sourceMap.get(f);
         return matches == null ? EMPTY_SET : matches;
     }
@@ -116,85 +170,40 @@ public class MatchMap {
      * Get Matches recorded for this target Feature.
      */
     public SortedSet<Match> getMatchesForTargetFeature(Feature f) {
+        sort();
         SortedSet<Match> matches = targetMap.get(f);
         return matches == null ? EMPTY_SET : matches;
     }
     
     /**
-     * Get Features matching source Feature f.
-     */
-    public List<Feature> getMatchedFeaturesFromSource(Feature f) {
-        TreeSet<Match> matchedFeatures = sourceMap.get(f);
-        List<Feature> list = new ArrayList<>();
-        if (matchedFeatures == null) return list;
-        for (Match m : matchedFeatures) {
-            list.add(m.getTarget());
-        }
-        return list;
-    }
-    
-    /**
-     * Get Features matching target Feature f.
-     */
-    public List<Feature> getMatchedFeaturesFromTarget(Feature f) {
-        TreeSet<Match> matchedFeatures = targetMap.get(f);
-        List<Feature> list = new ArrayList<>();
-        if (matchedFeatures == null) return list;
-        for (Match m : matchedFeatures) {
-            list.add(m.getSource());
-        }
-        return list;
-    }
-    
-    /**
-     * Return Match from source to target. Usually, the result contains 0
-     * or 1 Match, but nothing prevent insertion of several matches per couple
-     * of features.
-     */
-    public SortedSet<Match> getMatches(Feature source, Feature target) {
-        // Set of matches from f1
-        TreeSet<Match> set1 = sourceMap.get(source);
-        // Set of matches to f2
-        TreeSet<Match> set2 = targetMap.get(target);
-        // Intersection of both sets = Match:f1->f2
-        if (set1 != null && set2 != null) {
-            SortedSet<Match> set = (TreeSet<Match>)set1.clone();
-            set.retainAll(set2);
-            return set;
-        }
-        else return EMPTY_SET;
-    }
-    
-    private boolean removeMatchesForSourceFeature(Feature f) {
-        TreeSet<Match> set = sourceMap.remove(f);
-        return /*matches.removeAll(set)*/ true;
-    }
-    
-    private boolean removeMatchesForTargetFeature(Feature f) {
-        TreeSet<Match> set = targetMap.remove(f);
-        return /*matches.removeAll(set)*/ true;
-    }
-    
-    /**
-     * Remove a match from the map.
+     * Remove all the matches of the source feature of m if singleTarget is
+     * true, and all the matches of the target feature of m if singleSource
+     * is true.
+     * Matches are only marked as removed, the map is rebuilt by the next
+     * get* or filter call.
      */
     public void removeMatch(Match m, boolean singleSource, boolean singleTarget) {
-        if (singleTarget) removeMatchesForSourceFeature(m.getSource());
-        if (singleSource) removeMatchesForTargetFeature(m.getTarget());
+        // source and target maps miss the matches added since the last sort,
+        // but they may contain matches which have already been removed
+        if (!unsortedMatches.isEmpty()) sort();
+        if (singleTarget) removeAll(sourceMap.get(m.getSource()));
+        if (singleSource) removeAll(targetMap.get(m.getTarget()));
     }
     
     /**
      * Remove a match from the map.
+     * The match is only marked as removed, the map is rebuilt by the next
+     * get* or filter call.
      */
     public void removeMatch(Match m) {
-        // remove match from sourceMap
-        sourceMap.get(m.getSource()).remove(m);
-        // if sourceMap has no more match for this source, remove source feature
-        if (sourceMap.get(m.getSource()).size() == 0) sourceMap.remove(m.getSource());
-        // remove match from targetMap
-        targetMap.get(m.getTarget()).remove(m);
-        // if targetMap has no more match for this target, remove target feature
-        if (targetMap.get(m.getTarget()).size() == 0) targetMap.remove(m.getTarget());
+        removedMatches.add(m);
+        sorted = false;
+    }
+    
+    private void removeAll(Set<Match> matches) {
+        if (matches == null || matches.isEmpty()) return;
+        removedMatches.addAll(matches);
+        sorted = false;
     }
     
     /**
@@ -203,28 +212,32 @@ public class MatchMap {
      */
     public MatchMap filter(boolean singleSource, boolean singleTarget) {
         if (!singleSource && !singleTarget) return this;
-        //TreeSet<Match> filteredMatches = new TreeSet<Match>();
-        // new code
+        sort();
         MatchMap matchMap = new MatchMap();
-        TreeSet<Match> matches = new TreeSet<>();
-        for (Feature feature : sourceMap.keySet()) matches.addAll(sourceMap.get(feature));
-        for (Match match : matches) {
+        // Features already matched in the filtered matchMap
+        Set<Feature> matchedSources = new HashSet<>();
+        Set<Feature> matchedTargets = new HashSet<>();
+        for (Match match : sortedMatches) {
             Feature source = match.getSource();
             Feature target = match.getTarget();
-            // Check if matchMap already has target features for this source
-            SortedSet<Match> matchesForSource = matchMap.getMatchesForSourceFeature(source);
-            // Check if matchMap already has source features for this target
-            SortedSet<Match> matchesForTarget = matchMap.getMatchesForTargetFeature(target);
-            if (singleTarget && matchesForSource.size() > 0) continue;
-            else if (singleSource && matchesForTarget.size() > 0) continue;
-            else matchMap.add(match);
+            if (singleTarget && matchedSources.contains(source)) continue;
+            else if (singleSource && matchedTargets.contains(target)) continue;
+            else {
+                matchedSources.add(source);
+                matchedTargets.add(target);
+                matchMap.add(match);
+            }
         }
         return matchMap;
     }
     
     public void clear() {
+        unsortedMatches.clear();
+        removedMatches.clear();
+        sortedMatches = new Match[0];
         sourceMap.clear();
         targetMap.clear();
+        sorted = true;
     }
     
 }
@@ -0,0 +1,125 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.function.IntFunction;
+
+/**
+ * An unmodifiable SortedSet of matches backed by a slice of a sequence sorted
+ * in the natural order of matches (see {@link Match#compareTo(Match)}) and
+ * containing no duplicate.
+ * The sequence is either an array of matches, or a function returning the
+ * i-th match, which may create the Match object on demand.
+ *
+ * @author Michaël Michaud
+ */
+class MatchSet extends AbstractSet<Match> implements SortedSet<Match> {
+
+    private final IntFunction<Match> matches;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates a view of matches from index from (inclusive) to index to
+     * (exclusive). The array is not copied and must not be modified.
+     */
+    MatchSet(Match[] matches, int from, int to) {
+        this(i -> matches[i], from, to);
+    }
+
+    /**
+     * Creates a view of the matches returned by matches for indices from
+     * from (inclusive) to to (exclusive). The sequence must not change.
+     */
+    MatchSet(IntFunction<Match> matches, int from, int to) {
+        this.matches = matches;
+        this.from = from;
+        this.to = to;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public Iterator<Match> iterator() {
+        return new Iterator<Match>() {
+            int i = from;
+            public boolean hasNext() {
+                return i < to;
+            }
+            public Match next() {
+                if (i >= to) throw new NoSuchElementException();
+                return matches.apply(i++);
+            }
+        };
+    }
+
+    public boolean contains(Object o) {
+        if (!(o instanceof Match)) return false;
+        int i = lowerBound((Match)o);
+        return i < to && matches.apply(i).equals(o);
+    }
+
+    public Comparator<? super Match> comparator() {
+        return null;
+    }
+
+    public SortedSet<Match> subSet(Match fromElement, Match toElement) {
+        return new MatchSet(matches, lowerBound(fromElement), Math.max(lowerBound(fromElement), lowerBound(toElement)));
+    }
+
+    public SortedSet<Match> headSet(Match toElement) {
+        return new MatchSet(matches, from, lowerBound(toElement));
+    }
+
+    public SortedSet<Match> tailSet(Match fromElement) {
+        return new MatchSet(matches, lowerBound(fromElement), to);
+    }
+
+    public Match first() {
+        if (from == to) throw new NoSuchElementException();
+        return matches.apply(from);
+    }
+
+    public Match last() {
+        if (from == to) throw new NoSuchElementException();
+        return matches.apply(to-1);
+    }
+
+    // index of the first match greater or equal to m
+    private int lowerBound(Match m) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (matches.apply(mid).compareTo(m) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match;
+
+import fr.michaelm.util.text.Rule;
+import fr.michaelm.util.text.RuleRegistry;
+
+/**
+ * Immutable set of parameters used to create a configured Matcher from the
+ * prototype registered in a {@link MatcherRegistry}.
+ * A NaN maximum distance or minimum overlapping, or a null attribute, means
+ * that the value of the prototype is kept.
+ *
+ * @author Michaël Michaud
+ */
+public final class MatcherParameters {
+
+    private final double maxDistance;
+    private final double minOverlapping;
+    private final String sourceAttribute;
+    private final String targetAttribute;
+    private final Rule sourceRule;
+    private final Rule targetRule;
+
+    /**
+     * Parameters for a GeometryMatcher.
+     * @param maxDistance the maximum distance (see {@link Matcher#getMaximumDistance()})
+     * @param minOverlapping the minimum overlapping (see {@link Matcher#getMinimumOverlapping()})
+     */
+    public MatcherParameters(double maxDistance, double minOverlapping) {
+        this(maxDistance, minOverlapping, null, null,
+             RuleRegistry.NEUTRAL, RuleRegistry.NEUTRAL);
+    }
+
+    /**
+     * Parameters for an AttributeMatcher or a StringMatcher.
+     * @param maxDistance the maximum distance (see {@link Matcher#getMaximumDistance()})
+     * @param minOverlapping the minimum overlapping (see {@link Matcher#getMinimumOverlapping()})
+     * @param sourceAttribute the attribute of the source features
+     * @param targetAttribute the attribute of the target features
+     * @param sourceRule the rule used to transform source attribute values
+     * @param targetRule the rule used to transform target attribute values
+     */
+    public MatcherParameters(double maxDistance, double minOverlapping,
+                             String sourceAttribute, String targetAttribute,
+                             Rule sourceRule, Rule targetRule) {
+        this.maxDistance = maxDistance;
+        this.minOverlapping = minOverlapping;
+        this.sourceAttribute = sourceAttribute;
+        this.targetAttribute = targetAttribute;
+        this.sourceRule = sourceRule == null ? RuleRegistry.NEUTRAL : sourceRule;
+        this.targetRule = targetRule == null ? RuleRegistry.NEUTRAL : targetRule;
+    }
+
+    public double getMaximumDistance() {
+        return maxDistance;
+    }
+
+    public double getMinimumOverlapping() {
+        return minOverlapping;
+    }
+
+    public String getSourceAttribute() {
+        return sourceAttribute;
+    }
+
+    public String getTargetAttribute() {
+        return targetAttribute;
+    }
+
+    public Rule getSourceRule() {
+        return sourceRule;
+    }
+
+    public Rule getTargetRule() {
+        return targetRule;
+    }
+
+    public String toString() {
+        return "MatcherParameters[maxDistance=" + maxDistance +
+               ", minOverlapping=" + minOverlapping +
+               ", sourceAttribute=" + sourceAttribute +
+               ", targetAttribute=" + targetAttribute + "]";
+    }
+
+}
@@ -28,7 +28,10 @@ import java.util.Map;
 
 
 /**
- * Matcher Registry
+ * Matcher Registry.
+ * The registry contains a prototype of each Matcher, used to display the
+ * Matcher and its default parameters, and hands out factories creating
+ * new immutable matchers from a {@link MatcherParameters} object.
  * @author Michaël Michaud
  */
 public class MatcherRegistry<T extends Matcher> {
@@ -55,6 +58,7 @@ public class MatcherRegistry<T extends Matcher> {
         CentroidDistanceMatcher.instance(),
         HausdorffDistanceMatcher.instance(),
         SemiHausdorffDistanceMatcher.instance(),
+        FrechetDistanceMatcher.instance(),
         ShapeMatcher.instance()
     );
     
@@ -68,9 +72,20 @@ public class MatcherRegistry<T extends Matcher> {
     );
     
     private final Map<String,T> map = new LinkedHashMap<>();
+    private final Map<String,MatcherFactory<T>> factories = new LinkedHashMap<>();
     
+    /**
+     * Registers matcher as the prototype of its class.
+     * @throws IllegalArgumentException if matcher does not extend
+     * {@link AbstractMatcher}, as its factory could not create new instances
+     */
     public void register(T matcher) {
+        if (!(matcher instanceof AbstractMatcher)) {
+            throw new IllegalArgumentException("Cannot register " +
+                matcher.getClass().getName() + " : registered matchers must extend AbstractMatcher");
+        }
         map.put(matcher.getClass().getSimpleName(), matcher);
+        factories.put(matcher.getClass().getSimpleName(), createFactory(matcher));
     }
     
     public MatcherRegistry(T... matchers) {
@@ -85,6 +100,22 @@ public class MatcherRegistry<T extends Matcher> {
         return map;
     }
     
+    /**
+     * Returns the factory creating new Matchers of type name, or null if no
+     * Matcher has been registered with this name.
+     */
+    public MatcherFactory<T> getFactory(String name) {
+        return factories.get(name);
+    }
+    
+    /**
+     * Creates a factory returning immutable copies of prototype.
+     */
+    @SuppressWarnings("unchecked")
+    private MatcherFactory<T> createFactory(final T prototype) {
+        return parameters -> (T)((AbstractMatcher)prototype).newInstance(parameters);
+    }
+    
     public static Matcher getMatcher(MatcherRegistry<? extends Matcher> registry, String name) {
         return registry.map.get(name);
     }
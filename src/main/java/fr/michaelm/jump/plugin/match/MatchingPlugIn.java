@@ -76,6 +76,13 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
     private final String P_COPY_MATCHING            = "CopyMatchingFeatures";
     private final String P_COPY_NOT_MATCHING        = "CopyNotMatchingFeatures";
     private final String P_DISPLAY_LINKS            = "DisplayLinks";
+    private final String P_PARALLEL                 = "Parallel";
+    private final String P_NEAREST_NEIGHBOURS       = "NearestNeighbours";
+    private final String P_SPATIAL_ORDERING         = "SpatialOrdering";
+    private final String P_TREE_JOIN                = "TreeJoin";
+    private final String P_PART_INDEXING            = "PartIndexing";
+    private final String P_SUBDIVISION              = "Subdivision";
+    private final String P_COMPACT_MATCH_MAP        = "CompactMatchMap";
 
     private final String P_USE_ATTRIBUTES           = "UseAttributes";
     private final String P_SRC_ATTRIBUTE            = "SourceAttribute";
@@ -119,6 +126,20 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
     private final String GEOMETRY_MATCHER             = i18n.get("Geometry-matcher");
     private final String MAXIMUM_DISTANCE             = i18n.get("Maximum-distance");
     private final String MINIMUM_OVERLAPPING          = i18n.get("Minimum-overlapping");
+    private final String PARALLEL                     = i18n.get("Parallel");
+    private final String PARALLEL_TOOLTIP             = i18n.get("Parallel-tooltip");
+    private final String NEAREST_NEIGHBOURS           = i18n.get("Nearest-neighbours");
+    private final String NEAREST_NEIGHBOURS_TOOLTIP   = i18n.get("Nearest-neighbours-tooltip");
+    private final String SPATIAL_ORDERING             = i18n.get("Spatial-ordering");
+    private final String SPATIAL_ORDERING_TOOLTIP     = i18n.get("Spatial-ordering-tooltip");
+    private final String TREE_JOIN                    = i18n.get("Tree-join");
+    private final String TREE_JOIN_TOOLTIP            = i18n.get("Tree-join-tooltip");
+    private final String PART_INDEXING                = i18n.get("Part-indexing");
+    private final String PART_INDEXING_TOOLTIP        = i18n.get("Part-indexing-tooltip");
+    private final String SUBDIVISION                  = i18n.get("Subdivision");
+    private final String SUBDIVISION_TOOLTIP          = i18n.get("Subdivision-tooltip");
+    private final String COMPACT_MATCH_MAP            = i18n.get("Compact-match-map");
+    private final String COMPACT_MATCH_MAP_TOOLTIP    = i18n.get("Compact-match-map-tooltip");
     
     // Output options
     private final String OUTPUT_OPTIONS               = i18n.get("Output-options");
@@ -167,6 +188,21 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
     //private final boolean set_max_distance = !Double.isNaN(max_distance);
     private double min_overlapping = geometry_matcher.getMinimumOverlapping();
     //private final boolean set_min_overlapping = !Double.isNaN(min_overlapping);
+    private boolean parallel = false;
+    // 0 means that all the targets closer than max_distance are compared
+    private int nearest_neighbours = 0;
+    // Options of FeatureCollectionMatcher : they change the speed and the
+    // memory used by the matching, not the matches
+    private boolean spatial_ordering = false;
+    private boolean tree_join = false;
+    private boolean part_indexing = false;
+    // 0 means that target polygons are never subdivided
+    private int subdivision = 0;
+    private boolean compact_match_map = false;
+    // Last values used with each geometry matcher : registered matchers are
+    // shared prototypes and are never modified
+    private final Map<String,Double> max_distances = new HashMap<>();
+    private final Map<String,Double> min_overlappings = new HashMap<>();
 
     // Parameters : output options
     private boolean copy_matching_features = true;
@@ -213,6 +249,13 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         addParameter(P_GEOMETRY_MATCHER, geometry_matcher.getClass().getSimpleName());
         addParameter(P_MAX_GEOM_DISTANCE, max_distance);
         addParameter(P_MIN_GEOM_OVERLAP, min_overlapping);
+        addParameter(P_PARALLEL, parallel);
+        addParameter(P_NEAREST_NEIGHBOURS, nearest_neighbours);
+        addParameter(P_SPATIAL_ORDERING, spatial_ordering);
+        addParameter(P_TREE_JOIN, tree_join);
+        addParameter(P_PART_INDEXING, part_indexing);
+        addParameter(P_SUBDIVISION, subdivision);
+        addParameter(P_COMPACT_MATCH_MAP, compact_match_map);
         addParameter(P_COPY_MATCHING, copy_matching_features);
         addParameter(P_COPY_NOT_MATCHING, copy_not_matching_features);
         addParameter(P_DISPLAY_LINKS, display_links);
@@ -302,8 +345,15 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
             geometry_matcher   = (GeometryMatcher)dialog.getValue(GEOMETRY_MATCHER);
             max_distance       = dialog.getDouble(MAXIMUM_DISTANCE);
             min_overlapping    = dialog.getDouble(MINIMUM_OVERLAPPING);
-            geometry_matcher.setMaximumDistance(max_distance);
-            geometry_matcher.setMinimumOverlapping(min_overlapping);
+            nearest_neighbours = dialog.getInteger(NEAREST_NEIGHBOURS);
+            max_distances.put(geometry_matcher.getClass().getSimpleName(), max_distance);
+            min_overlappings.put(geometry_matcher.getClass().getSimpleName(), min_overlapping);
+            parallel           = dialog.getBoolean(PARALLEL);
+            spatial_ordering   = dialog.getBoolean(SPATIAL_ORDERING);
+            tree_join          = dialog.getBoolean(TREE_JOIN);
+            part_indexing      = dialog.getBoolean(PART_INDEXING);
+            subdivision        = dialog.getInteger(SUBDIVISION);
+            compact_match_map  = dialog.getBoolean(COMPACT_MATCH_MAP);
             
             // Get output options
             copy_matching_features       = dialog.getBoolean(COPY_MATCHING_FEATURES);
@@ -320,12 +370,6 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
             max_string_distance          = dialog.getDouble(MAXIMUM_STRING_DISTANCE);
             min_string_overlapping       = dialog.getDouble(MINIMUM_STRING_OVERLAPPING);
             if (!use_attributes) attribute_matcher = MatchAllStringsMatcher.MATCH_ALL;
-            else attribute_matcher.setAttributes(source_layer_attribute, 
-                                                 target_layer_attribute);
-            attribute_matcher.setMaximumDistance(max_string_distance);
-            attribute_matcher.setMinimumOverlapping(min_string_overlapping);
-            attribute_matcher.setSourceRule(RuleRegistry.getRule(source_att_preprocessing));
-            attribute_matcher.setTargetRule(RuleRegistry.getRule(target_att_preprocessing));
             
             // get transfer options
             transfer                 = dialog.getBoolean(TRANSFER_TO_REFERENCE_LAYER);
@@ -346,6 +390,13 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
             addParameter(P_GEOMETRY_MATCHER, geometry_matcher.getClass().getSimpleName());
             addParameter(P_MAX_GEOM_DISTANCE, max_distance);
             addParameter(P_MIN_GEOM_OVERLAP, min_overlapping);
+            addParameter(P_PARALLEL, parallel);
+            addParameter(P_NEAREST_NEIGHBOURS, nearest_neighbours);
+        addParameter(P_SPATIAL_ORDERING, spatial_ordering);
+        addParameter(P_TREE_JOIN, tree_join);
+        addParameter(P_PART_INDEXING, part_indexing);
+        addParameter(P_SUBDIVISION, subdivision);
+        addParameter(P_COMPACT_MATCH_MAP, compact_match_map);
             addParameter(P_COPY_MATCHING, copy_matching_features);
             addParameter(P_COPY_NOT_MATCHING, copy_not_matching_features);
             addParameter(P_DISPLAY_LINKS, display_links);
@@ -421,6 +472,8 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         final JTextField jtf_overlap = dialog.addDoubleField(MINIMUM_OVERLAPPING, min_overlapping, 12, null);
         jtf_overlap.setEnabled(!Double.isNaN(geometry_matcher.getMinimumOverlapping()));
 
+        dialog.addIntegerField(NEAREST_NEIGHBOURS, nearest_neighbours, 12, NEAREST_NEIGHBOURS_TOOLTIP);
+
         ////////////////////////////////////////////////////////////////////////
         // UI : CHOOSE TARGET LAYER AND SOURCE CARDINALITY
         ////////////////////////////////////////////////////////////////////////
@@ -430,6 +483,12 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         jcb_layer_tgt.setPreferredSize(new Dimension(220,20));
         jcb_layer_tgt.addActionListener(e -> updateDialog(dialog));
         dialog.addCheckBox(SINGLE_TARGET, single_target, SINGLE_TARGET_TOOLTIP);
+        dialog.addCheckBox(PARALLEL, parallel, PARALLEL_TOOLTIP);
+        dialog.addCheckBox(SPATIAL_ORDERING, spatial_ordering, SPATIAL_ORDERING_TOOLTIP);
+        dialog.addCheckBox(TREE_JOIN, tree_join, TREE_JOIN_TOOLTIP);
+        dialog.addCheckBox(PART_INDEXING, part_indexing, PART_INDEXING_TOOLTIP);
+        dialog.addIntegerField(SUBDIVISION, subdivision, 12, SUBDIVISION_TOOLTIP);
+        dialog.addCheckBox(COMPACT_MATCH_MAP, compact_match_map, COMPACT_MATCH_MAP_TOOLTIP);
 
         jcb_geom_operation.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
@@ -437,17 +496,20 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
                 // Set jtf_dist and jtf_overlap to the last used values for this matcher
                 geometry_matcher = (GeometryMatcher)jcb_geom_operation.getSelectedItem();
                 if (geometry_matcher != null) {
-                    jtf_dist.setText("" + geometry_matcher.getMaximumDistance());
-                    jtf_overlap.setText("" + geometry_matcher.getMinimumOverlapping());
+                    String name = geometry_matcher.getClass().getSimpleName();
+                    jtf_dist.setText("" + max_distances.getOrDefault(
+                        name, geometry_matcher.getMaximumDistance()));
+                    jtf_overlap.setText("" + min_overlappings.getOrDefault(
+                        name, geometry_matcher.getMinimumOverlapping()));
                 } else {
                     Logger.warn("MatchingPlugin : null geometry_matcher");
                 }
             }
         });
-        jtf_dist.addActionListener(e ->
-            geometry_matcher.setMaximumDistance(dialog.getDouble(MAXIMUM_DISTANCE)));
-        jtf_overlap.addActionListener(e ->
-            geometry_matcher.setMinimumOverlapping(dialog.getDouble(MINIMUM_OVERLAPPING)));
+        jtf_dist.addActionListener(e -> max_distances.put(
+            geometry_matcher.getClass().getSimpleName(), dialog.getDouble(MAXIMUM_DISTANCE)));
+        jtf_overlap.addActionListener(e -> min_overlappings.put(
+            geometry_matcher.getClass().getSimpleName(), dialog.getDouble(MINIMUM_OVERLAPPING)));
 
         ////////////////////////////////////////////////////////////////////////
         // UI : CHOOSE OUTPUT OPTIONS
@@ -561,6 +623,10 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         geometry_matcher = (GeometryMatcher)dialog.getValue(GEOMETRY_MATCHER);
         dialog.setFieldEnabled(MAXIMUM_DISTANCE, !Double.isNaN(geometry_matcher.getMaximumDistance()));
         dialog.setFieldEnabled(MINIMUM_OVERLAPPING, !Double.isNaN(geometry_matcher.getMinimumOverlapping()));
+        dialog.setFieldEnabled(NEAREST_NEIGHBOURS,
+                geometry_matcher instanceof MinimumDistanceMatcher ||
+                geometry_matcher instanceof CentroidDistanceMatcher);
+        dialog.setFieldEnabled(SUBDIVISION, geometry_matcher.canMatchTiles());
 
         // Updates related to a layer change
         Layer srcLayer      = dialog.getLayer(SOURCE_LAYER);
@@ -630,12 +696,21 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         }
         max_distance               = getDoubleParam(P_MAX_GEOM_DISTANCE);
         min_overlapping            = getDoubleParam(P_MIN_GEOM_OVERLAP);
+        parallel                   = getBooleanParam(P_PARALLEL);
+        nearest_neighbours         = getIntegerParam(P_NEAREST_NEIGHBOURS);
+        spatial_ordering           = getBooleanParam(P_SPATIAL_ORDERING);
+        tree_join                  = getBooleanParam(P_TREE_JOIN);
+        part_indexing              = getBooleanParam(P_PART_INDEXING);
+        subdivision                = getIntegerParam(P_SUBDIVISION);
+        compact_match_map          = getBooleanParam(P_COMPACT_MATCH_MAP);
         copy_matching_features     = getBooleanParam(P_COPY_MATCHING);
         copy_not_matching_features = getBooleanParam(P_COPY_NOT_MATCHING);
         display_links              = getBooleanParam(P_DISPLAY_LINKS);
-        // derived
-        geometry_matcher.setMaximumDistance(max_distance);
-        geometry_matcher.setMinimumOverlapping(min_overlapping);
+        // derived : the registered matcher is a shared prototype, matching is
+        // done with a new immutable matcher created from the parameters
+        GeometryMatcher geometryMatcher = MatcherRegistry.GEOMETRY_MATCHERS
+                .getFactory(getStringParam(P_GEOMETRY_MATCHER))
+                .newMatcher(new MatcherParameters(max_distance, min_overlapping));
 
         // attribute matcher
         use_attributes           = getBooleanParam(P_USE_ATTRIBUTES);
@@ -650,14 +725,19 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         min_string_overlapping   = getDoubleParam(P_MIN_STRING_OVERLAP);
         has_min_string_overlapping = getBooleanParam(P_HAS_MIN_STRING_OVERLAP);
         // derived
+        StringMatcher attributeMatcher = MatchAllStringsMatcher.MATCH_ALL;
         if (!use_attributes) attribute_matcher = MatchAllStringsMatcher.MATCH_ALL;
         else {
             if (attribute_matcher == null) {
                 throw new Exception("Attribute Matcher '" + getStringParam(P_ATTRIBUTE_MATCHER) + "' has not been found");
             }
-            attribute_matcher.setAttributes(source_layer_attribute, target_layer_attribute);
-            attribute_matcher.setMaximumDistance(max_string_distance);
-            attribute_matcher.setMinimumOverlapping(min_string_overlapping);
+            attributeMatcher = MatcherRegistry.STRING_MATCHERS
+                .getFactory(getStringParam(P_ATTRIBUTE_MATCHER))
+                .newMatcher(new MatcherParameters(
+                    max_string_distance, min_string_overlapping,
+                    source_layer_attribute, target_layer_attribute,
+                    RuleRegistry.getRule(source_att_preprocessing),
+                    RuleRegistry.getRule(target_att_preprocessing)));
         }
 
         // transfer options
@@ -690,8 +770,36 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         monitor.report(SEARCHING_MATCHES);
         FeatureCollectionMatcher matcher = new FeatureCollectionMatcher(
                 source_fc.getFeatures(), target_fc.getFeatures(), 
-                geometry_matcher, attribute_matcher, monitor);
-        Collection<Feature> features = matcher.matchAll(single_source, single_target);
+                geometryMatcher, attributeMatcher, monitor);
+        matcher.setParallel(parallel);
+        matcher.setSpatialOrdering(spatial_ordering);
+        matcher.setTreeJoin(tree_join);
+        matcher.setPartIndexing(part_indexing);
+        matcher.setSubdivision(subdivision);
+        matcher.setCompactMatchMap(compact_match_map);
+        matcher.setNearestNeighbours(nearest_neighbours);
+        Collection<Feature> features;
+        Collection<Feature> links = null;
+        if (!single_source && !single_target && !transfer) {
+            // Matches are neither filtered nor used for attribute transfer :
+            // they are not kept in a MatchMap, links are created on the fly
+            final Set<Feature> matchedFeatures = new LinkedHashSet<>();
+            final List<Feature> streamedLinks = new ArrayList<>();
+            final FeatureSchema linkSchema = createLinkSchema();
+            final GeometryFactory gf = new GeometryFactory();
+            final MatchContext matchContext = matcher.getContext();
+            matcher.matchAll(match -> {
+                matchedFeatures.add(match.getSource());
+                if (display_links) {
+                    Feature link = createLink(match, linkSchema, gf, matchContext);
+                    if (link != null) streamedLinks.add(link);
+                }
+            });
+            features = matchedFeatures;
+            links = streamedLinks;
+        } else {
+            features = matcher.matchAll(single_source, single_target);
+        }
         if (matcher.interrupted) return;
 
         if (copy_matching_features) {
@@ -708,7 +816,8 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
             if (lyr != null) setNotMatchingStyle(lyr);
         }
         if (display_links) {
-            Layer lyr = createLayer(createLinks(matcher.getMatchMap()), context,
+            if (links == null) links = createLinks(matcher.getMatchMap(), matcher.getContext());
+            Layer lyr = createLayer(links, context,
                 i18n.get("Links") + " " + source_layer.getName() + " - " + target_layer.getName(), false);
             if (lyr != null) setLinkStyle(lyr);
         }
@@ -734,7 +843,7 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
                 }
             }
             FeatureCollection new_dataset = new FeatureDataset(new_schema);
-            MatchMap matchMap = matcher.getMatchMap();
+            AbstractMatchMap matchMap = matcher.getMatchMap();
             // If user wants to transfer attributes from the best match only
             // and MatchMap has not yet been filtered by single_source option
             if (transfer_best_match_only && !single_source) {
@@ -825,38 +934,62 @@ public class MatchingPlugIn extends ThreadedBasePlugIn {
         return inverse;
     }
     
-    public Collection<Feature> createLinks(MatchMap map) {
+    public Collection<Feature> createLinks(AbstractMatchMap map) {
+        return createLinks(map, new MatchContext());
+    }
+
+    /**
+     * Creates the links of map, reading interior points of the matched
+     * geometries from matchContext, so that the ones already computed by the
+     * matching are not computed again.
+     */
+    public Collection<Feature> createLinks(AbstractMatchMap map, MatchContext matchContext) {
         List<Feature> links = new ArrayList<>();
         GeometryFactory gf = new GeometryFactory();
+        FeatureSchema schema = createLinkSchema();
+        for (Match match : map.getAllMatches()) {
+            Feature f = createLink(match, schema, gf, matchContext);
+            if (f != null) links.add(f);
+        }
+        return links;
+    }
+
+    private FeatureSchema createLinkSchema() {
         FeatureSchema schema = new FeatureSchema();
         schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
         schema.addAttribute("SOURCE", AttributeType.INTEGER);
         schema.addAttribute("TARGET", AttributeType.INTEGER);
         schema.addAttribute("SCORE", AttributeType.DOUBLE);
-        for (Match match : map.getAllMatches()) {
-            BasicFeature f = new BasicFeature(schema);
-            Coordinate[] coords = new Coordinate[2];
-            // [2013-04-21] cannot draw link ifa geometry is empty 
-            if (match.getSource().getGeometry().isEmpty() || 
-                match.getTarget().getGeometry().isEmpty()) continue;
-            if (geometry_matcher instanceof MinimumDistanceMatcher) {
-                coords = DistanceOp.nearestPoints(
-                    match.getSource().getGeometry(), 
-                    match.getTarget().getGeometry());
-            } else {
-                coords[0] = match.getSource().getGeometry().getInteriorPoint().getCoordinate();
-                coords[1] = match.getTarget().getGeometry().getInteriorPoint().getCoordinate();
-            }
-            Geometry g = coords[0].equals(coords[1]) ? 
-                         gf.createPoint(coords[0]):
-                         gf.createLineString(coords);
-            f.setGeometry(g);
-            f.setAttribute("SOURCE", match.getSource().getID());
-            f.setAttribute("TARGET", match.getTarget().getID());
-            f.setAttribute("SCORE",  match.getScore());
-            links.add(f);
+        return schema;
+    }
+
+    /**
+     * Creates a link feature between the source and the target of match,
+     * or returns null if one of them has an empty geometry.
+     */
+    private Feature createLink(Match match, FeatureSchema schema, GeometryFactory gf,
+                               MatchContext matchContext) {
+        BasicFeature f = new BasicFeature(schema);
+        Coordinate[] coords = new Coordinate[2];
+        // [2013-04-21] cannot draw link ifa geometry is empty 
+        if (match.getSource().getGeometry().isEmpty() || 
+            match.getTarget().getGeometry().isEmpty()) return null;
+        if (geometry_matcher instanceof MinimumDistanceMatcher) {
+            coords = DistanceOp.nearestPoints(
+                match.getSource().getGeometry(), 
+                match.getTarget().getGeometry());
+        } else {
+            coords[0] = matchContext.getInteriorPoint(match.getSource().getGeometry()).getCoordinate();
+            coords[1] = matchContext.getInteriorPoint(match.getTarget().getGeometry()).getCoordinate();
         }
-        return links;
+        Geometry g = coords[0].equals(coords[1]) ? 
+                     gf.createPoint(coords[0]):
+                     gf.createLineString(coords);
+        f.setGeometry(g);
+        f.setAttribute("SOURCE", match.getSource().getID());
+        f.setAttribute("TARGET", match.getTarget().getID());
+        f.setAttribute("SCORE",  match.getScore());
+        return f;
     }
     
     public void setMatchingStyle(Layer layer) {
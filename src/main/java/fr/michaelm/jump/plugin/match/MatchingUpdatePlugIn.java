@@ -395,7 +395,7 @@ public class MatchingUpdatePlugIn extends ThreadedBasePlugIn {
                 },
                 null, 
                 monitor);
-        MatchMap matchMap = matcher.getMatchMap();
+        AbstractMatchMap matchMap = matcher.getMatchMap();
         Map<Integer,Feature> srcMap = getFeatureMap(source_layer);
         Map<Integer,Feature> tgtMap = getFeatureMap(target_layer);
         for (Feature f : link_layer.getFeatureCollectionWrapper().getFeatures()) {
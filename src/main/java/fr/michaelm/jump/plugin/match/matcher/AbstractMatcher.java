@@ -25,20 +25,29 @@ package fr.michaelm.jump.plugin.match.matcher;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.Feature;
 import fr.michaelm.jump.plugin.match.Matcher;
+import fr.michaelm.jump.plugin.match.MatcherParameters;
 
 
 /**
  * Abstract Matcher implementing common methods
  *
+ * Matchers returned by the static instance() methods are shared prototypes.
+ * Matchers used by a matching process should be created with
+ * {@link #newInstance(MatcherParameters)}, which returns an immutable copy
+ * of the prototype, safe to be used by several threads.
+ *
  * @author Michaël Michaud
  */
-public abstract class AbstractMatcher implements Matcher {
+public abstract class AbstractMatcher implements Matcher, Cloneable {
 
     private static final I18N i18n = I18N.getInstance("fr.michaelm.jump.plugin.match");
     
     protected double max_dist = Double.NaN;
     
     protected double min_overlap = Double.NaN;
+
+    // true for matchers created by newInstance
+    private boolean immutable = false;
     
     /**
      * {@inheritDoc}.
@@ -77,6 +86,7 @@ public abstract class AbstractMatcher implements Matcher {
      * In this main abstract implementation, setMaximumDistance has no effect.
      */
      public void setMaximumDistance(double max_dist) {
+         checkMutable();
          this.max_dist = Double.NaN;
      }
      
@@ -84,7 +94,65 @@ public abstract class AbstractMatcher implements Matcher {
      * In this main abstract implementation, setMinimumOverlapping has no effect.
      */
      public void setMinimumOverlapping(double min_overlap) {
+         checkMutable();
          this.min_overlap = Double.NaN;
      }
 
+    /**
+     * Returns a new immutable Matcher having the same type as this one and
+     * configured with parameters.
+     * @param parameters parameters of the new Matcher
+     */
+     public AbstractMatcher newInstance(MatcherParameters parameters) {
+         AbstractMatcher matcher = copy();
+         matcher.immutable = false;
+         matcher.configure(parameters);
+         matcher.immutable = true;
+         return matcher;
+     }
+
+    /**
+     * Returns true if this matcher has been created by
+     * {@link #newInstance(MatcherParameters)} and cannot be modified.
+     */
+     public boolean isImmutable() {
+         return immutable;
+     }
+
+    /**
+     * Throws an UnsupportedOperationException if this matcher is immutable.
+     * Every setter must call this method before changing the matcher state.
+     */
+     protected void checkMutable() {
+         if (immutable) {
+             throw new UnsupportedOperationException(
+                 getClass().getSimpleName() + " instance is immutable");
+         }
+     }
+
+    /**
+     * Returns a shallow copy of this matcher. Subclasses holding mutable
+     * objects must override this method to copy them.
+     */
+     protected AbstractMatcher copy() {
+         try {
+             return (AbstractMatcher)super.clone();
+         } catch (CloneNotSupportedException e) {
+             throw new IllegalStateException(e);
+         }
+     }
+
+    /**
+     * Set the parameters of a new instance. A NaN value keeps the value of
+     * the prototype.
+     */
+     protected void configure(MatcherParameters parameters) {
+         if (!Double.isNaN(parameters.getMaximumDistance())) {
+             setMaximumDistance(parameters.getMaximumDistance());
+         }
+         if (!Double.isNaN(parameters.getMinimumOverlapping())) {
+             setMinimumOverlapping(parameters.getMinimumOverlapping());
+         }
+     }
+
 }
@@ -24,6 +24,7 @@ package fr.michaelm.jump.plugin.match.matcher;
 
 import com.vividsolutions.jump.feature.Feature;
 import fr.michaelm.jump.plugin.match.Index;
+import fr.michaelm.jump.plugin.match.MatcherParameters;
 import java.util.Collection;
 
 
@@ -79,6 +80,7 @@ public abstract class AttributeMatcher extends AbstractMatcher {
     }
      
     public void setAttributes(String sourceAttribute, String targetAttribute) {
+       checkMutable();
        this.sourceAttribute = sourceAttribute;
        this.targetAttribute = targetAttribute;
     }
@@ -91,6 +93,16 @@ public abstract class AttributeMatcher extends AbstractMatcher {
         return targetAttribute;
     }
     
+    /**
+     * {@inheritDoc}.
+     */
+    protected void configure(MatcherParameters parameters) {
+        super.configure(parameters);
+        if (parameters.getSourceAttribute() != null && parameters.getTargetAttribute() != null) {
+            setAttributes(parameters.getSourceAttribute(), parameters.getTargetAttribute());
+        }
+    }
+    
     /**
      * The default index for AttributeMatcher maps each possible target 
      * attribute value to the features having this value.
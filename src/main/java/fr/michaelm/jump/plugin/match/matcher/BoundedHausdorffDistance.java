@@ -0,0 +1,136 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Discrete Hausdorff distance bounded by a maximum distance.
+ * Sample points are the same as the ones of DiscreteHausdorffDistance
+ * (vertices, plus points densifying each segment in 1/densifyFraction parts
+ * if densifyFraction is not 0), but the distance from each sample point to
+ * the other geometry is computed with a {@link SegmentIndex}, and the
+ * computation stops as soon as a sample point is farther than the maximum
+ * distance. Distances less than or equal to the maximum distance are the
+ * same as the ones computed by DiscreteHausdorffDistance.
+ *
+ * @author Michaël Michaud
+ */
+public class BoundedHausdorffDistance {
+
+    private BoundedHausdorffDistance() {}
+
+    /**
+     * Returns the discrete Hausdorff distance between g0 and g1 if it is less
+     * than or equal to maxDistance, and Double.POSITIVE_INFINITY otherwise.
+     * @param g0 the first geometry
+     * @param index0 the segment index of g0
+     * @param g1 the second geometry
+     * @param index1 the segment index of g1
+     * @param densifyFraction densification fraction, in ]0,1], or 0 to use
+     *                        only vertices
+     * @param maxDistance the maximum distance
+     */
+    public static double distance(Geometry g0, SegmentIndex index0,
+                                  Geometry g1, SegmentIndex index1,
+                                  double densifyFraction, double maxDistance) {
+        double d = orientedDistance(g0, index1, densifyFraction, maxDistance);
+        if (d > maxDistance) return d;
+        return Math.max(d, orientedDistance(g1, index0, densifyFraction, maxDistance));
+    }
+
+    /**
+     * Returns the maximum distance from sample points of g0 to the geometry
+     * indexed by index1 if it is less than or equal to maxDistance, and
+     * Double.POSITIVE_INFINITY otherwise.
+     * @param g0 the geometry to sample
+     * @param index1 the segment index of the other geometry
+     * @param densifyFraction densification fraction, in ]0,1], or 0 to use
+     *                        only vertices
+     * @param maxDistance the maximum distance
+     */
+    public static double orientedDistance(Geometry g0, SegmentIndex index1,
+                                          double densifyFraction, double maxDistance) {
+        BoundedDistanceFilter filter = new BoundedDistanceFilter(
+                index1, densifyFraction, maxDistance);
+        g0.apply(filter);
+        return filter.max;
+    }
+
+    /**
+     * Computes the distance of vertices and densified points of each
+     * coordinate sequence, and stops at the first point farther than
+     * maxDistance.
+     */
+    private static class BoundedDistanceFilter implements CoordinateSequenceFilter {
+
+        private final SegmentIndex index;
+        private final int numSubSegs;
+        private final double maxDistance;
+        private final Coordinate pt = new Coordinate();
+        double max = 0.0;
+
+        BoundedDistanceFilter(SegmentIndex index, double densifyFraction, double maxDistance) {
+            this.index = index;
+            this.numSubSegs = densifyFraction > 0.0 ? (int)Math.rint(1.0/densifyFraction) : 1;
+            this.maxDistance = maxDistance;
+        }
+
+        public void filter(CoordinateSequence seq, int i) {
+            // vertex
+            pt.x = seq.getX(i);
+            pt.y = seq.getY(i);
+            if (!measure()) return;
+            // points densifying segment [i-1, i]
+            if (i == 0 || numSubSegs < 2) return;
+            double x0 = seq.getX(i-1);
+            double y0 = seq.getY(i-1);
+            double delx = (seq.getX(i) - x0)/numSubSegs;
+            double dely = (seq.getY(i) - y0)/numSubSegs;
+            for (int j = 1 ; j < numSubSegs ; j++) {
+                pt.x = x0 + j*delx;
+                pt.y = y0 + j*dely;
+                if (!measure()) return;
+            }
+        }
+
+        // returns false if pt is farther than maxDistance
+        private boolean measure() {
+            double d = index.distance(pt, maxDistance);
+            if (d > max) max = d;
+            return d <= maxDistance;
+        }
+
+        public boolean isDone() {
+            return max > maxDistance;
+        }
+
+        public boolean isGeometryChanged() {
+            return false;
+        }
+    }
+
+}
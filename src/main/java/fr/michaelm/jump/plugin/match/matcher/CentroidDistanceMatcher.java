@@ -49,18 +49,28 @@ public class CentroidDistanceMatcher extends GeometryMatcher {
      */
     public double match(Geometry source, Geometry target, Object context)
                                                               throws Exception {
-        source = source.getCentroid();
-        target = target.getCentroid();
+        source = centroid(source, context);
+        target = centroid(target, context);
         double dist = source.distance(target);
         if (dist > max_dist) return 0.0;
         else return (1.0 - dist/max_dist);
     }
     
+    /**
+     * {@inheritDoc}.
+     * The distance between the envelopes is a lower bound of the distance
+     * between the centroids, which lie inside the envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return distanceScoreUpperBound(envelopeDistance(source, target));
+    }
+    
     /**
      * Sets the maximum distance returning a non null value.
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
         this.max_dist = max_dist;
     }
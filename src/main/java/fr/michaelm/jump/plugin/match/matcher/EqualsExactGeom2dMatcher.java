@@ -49,5 +49,13 @@ public class EqualsExactGeom2dMatcher extends GeometryMatcher {
     public double match(Geometry source, Geometry target, Object context) throws Exception {
         return source.equalsExact(target)? 1.0 : 0.0;
     }
+    
+    /**
+     * {@inheritDoc}.
+     * Equal geometries have equal envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().equals(target.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
             
 }
@@ -61,5 +61,13 @@ public class EqualsExactGeom3dMatcher extends GeometryMatcher {
         }
         return 0.0;
     }
+    
+    /**
+     * {@inheritDoc}.
+     * Equal geometries have equal envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().equals(target.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
         
 }
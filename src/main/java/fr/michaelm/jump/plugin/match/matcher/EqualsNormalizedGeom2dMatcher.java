@@ -49,11 +49,17 @@ public class EqualsNormalizedGeom2dMatcher extends GeometryMatcher {
      */
     public double match(Geometry source, Geometry target, Object context)
                                                               throws Exception {
-        source = source.copy();
-        source.normalize();
-        target = target.copy();
-        target.normalize();
+        source = normalized(source, context);
+        target = normalized(target, context);
         return (source.equalsExact(target)) ? 1.0 : 0.0;
     }
+    
+    /**
+     * {@inheritDoc}.
+     * Equal geometries have equal envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().equals(target.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
         
 }
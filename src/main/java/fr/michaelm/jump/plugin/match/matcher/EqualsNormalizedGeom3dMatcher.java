@@ -49,10 +49,8 @@ public class EqualsNormalizedGeom3dMatcher extends GeometryMatcher {
     * {@inheritDoc}.
     */
     public double match(Geometry source, Geometry target, Object context) throws Exception {
-        source = source.copy();
-        source.normalize();
-        target = target.copy();
-        target.normalize();
+        source = normalized(source, context);
+        target = normalized(target, context);
         if (source.equalsExact(target)) {
             Coordinate[] cc1 = source.getCoordinates();
             Coordinate[] cc2 = target.getCoordinates();
@@ -66,4 +64,12 @@ public class EqualsNormalizedGeom3dMatcher extends GeometryMatcher {
         return 0.0;
     }
     
+    /**
+     * {@inheritDoc}.
+     * Equal geometries have equal envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().equals(target.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
+    
 }
@@ -47,7 +47,29 @@ public class EqualsTopologicalGeomMatcher extends GeometryMatcher {
      */
     public double match(Geometry source, Geometry target, Object context)
                                                               throws Exception {
+        if (source.isEmpty() || target.isEmpty()) {
+            return source.isEmpty() && target.isEmpty() ? 1.0 : 0.0;
+        }
+        // topologically equal geometries have the same envelope
+        if (!source.getEnvelopeInternal().equals(target.getEnvelopeInternal())) {
+            return 0.0;
+        }
+        if (context instanceof MatchContext) {
+            // two geometries are topologically equal iff each one covers the
+            // other one
+            MatchContext matchContext = (MatchContext)context;
+            return matchContext.getPreparedGeometry(source).covers(target) &&
+                   matchContext.getPreparedGeometry(target).covers(source) ? 1.0 : 0.0;
+        }
         return (source.equals(target)) ? 1.0 : 0.0;
     }
     
+    /**
+     * {@inheritDoc}.
+     * Equal geometries have equal envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().equals(target.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
+    
 }
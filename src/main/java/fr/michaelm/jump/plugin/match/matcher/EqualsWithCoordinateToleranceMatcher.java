@@ -23,6 +23,7 @@
 package fr.michaelm.jump.plugin.match.matcher;
 
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
 /**
@@ -48,18 +49,31 @@ public class EqualsWithCoordinateToleranceMatcher extends GeometryMatcher {
      * {@inheritDoc}.
      */
     public double match(Geometry source, Geometry target, Object context) throws Exception {
-        source = source.copy();
-        source.normalize();
-        target = target.copy();
-        target.normalize();
+        source = normalized(source, context);
+        target = normalized(target, context);
         return source.equalsExact(target, max_dist)? 1.0 : 0.0;
     }
     
+    /**
+     * {@inheritDoc}.
+     * Envelopes of matching geometries cannot differ by more than max_dist.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        Envelope e1 = source.getEnvelopeInternal();
+        Envelope e2 = target.getEnvelopeInternal();
+        if (e1.isNull() || e2.isNull()) return e1.isNull() && e2.isNull() ? 1.0 : 0.0;
+        return Math.abs(e1.getMinX() - e2.getMinX()) <= max_dist &&
+               Math.abs(e1.getMaxX() - e2.getMaxX()) <= max_dist &&
+               Math.abs(e1.getMinY() - e2.getMinY()) <= max_dist &&
+               Math.abs(e1.getMaxY() - e2.getMaxY()) <= max_dist ? 1.0 : 0.0;
+    }
+    
     /**
      * Sets the maximum distance returning between normalized geometry points.
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         this.max_dist = max_dist;
     }
     
@@ -0,0 +1,221 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.Arrays;
+
+/**
+ * Matcher measuring the discrete Fréchet distance between two lines.
+ * Contrary to the Hausdorff distance, the Fréchet distance takes the order
+ * of points along the lines into account : lines running in opposite
+ * directions or zig-zagging around each other do not match.
+ * Lines are densified so that consecutive points are not farther than
+ * max_dist / 2, then the coupling is computed on the points within max_dist
+ * of each other only, and abandoned as soon as no coupling can stay under
+ * max_dist.
+ * Only lineal geometries made of a single LineString can match.
+ *
+ * @author Michaël Michaud
+ */
+public class FrechetDistanceMatcher extends GeometryMatcher {
+    
+    private static final FrechetDistanceMatcher FRECHET_DISTANCE =
+        new FrechetDistanceMatcher(1.0);
+    
+    public static FrechetDistanceMatcher instance() {
+        return FRECHET_DISTANCE;
+    }
+
+    public FrechetDistanceMatcher(double max_dist) {
+        this.max_dist = max_dist;
+    }
+    
+    /**
+     * {@inheritDoc}.
+     */
+    public double match(Geometry source, Geometry target, Object context)
+                                                              throws Exception {
+        LineString line1 = getLine(source);
+        LineString line2 = getLine(target);
+        if (line1 == null || line2 == null) return 0.0;
+        // first points and last points are always coupled
+        if (endPointsDistance(line1, line2) > max_dist) return 0.0;
+        double step = max_dist / 2.0;
+        double dist = discreteFrechetDistance(
+                densify(line1, step), densify(line2, step), max_dist);
+        if (dist > max_dist) return 0.0;
+        else return 1.0 - dist / max_dist;
+    }
+    
+    /**
+     * {@inheritDoc}.
+     * The Fréchet distance is not less than the distance between first
+     * points, between last points, and between envelope sides.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        LineString line1 = getLine(source);
+        LineString line2 = getLine(target);
+        if (line1 == null || line2 == null) return 0.0;
+        Envelope e1 = line1.getEnvelopeInternal();
+        Envelope e2 = line2.getEnvelopeInternal();
+        double d = Math.max(
+                Math.max(Math.abs(e1.getMinX() - e2.getMinX()), Math.abs(e1.getMaxX() - e2.getMaxX())),
+                Math.max(Math.abs(e1.getMinY() - e2.getMinY()), Math.abs(e1.getMaxY() - e2.getMaxY())));
+        return distanceScoreUpperBound(Math.max(d, endPointsDistance(line1, line2)));
+    }
+    
+    /**
+     * Returns the single non empty LineString of g, or null if g is not a
+     * single line.
+     */
+    private static LineString getLine(Geometry g) {
+        if (g.getNumGeometries() != 1) return null;
+        Geometry component = g.getGeometryN(0);
+        if (component instanceof LineString && !component.isEmpty()) {
+            return (LineString)component;
+        }
+        return null;
+    }
+    
+    private static double endPointsDistance(LineString line1, LineString line2) {
+        int n1 = line1.getNumPoints();
+        int n2 = line2.getNumPoints();
+        return Math.max(
+                line1.getCoordinateN(0).distance(line2.getCoordinateN(0)),
+                line1.getCoordinateN(n1-1).distance(line2.getCoordinateN(n2-1)));
+    }
+    
+    /**
+     * Returns the x,y coordinates of line in a single array, with points
+     * added on long segments so that consecutive points are not farther
+     * than step.
+     */
+    private static double[] densify(LineString line, double step) {
+        Coordinate[] cc = line.getCoordinates();
+        int size = 1;
+        int[] parts = new int[cc.length];
+        for (int i = 1 ; i < cc.length ; i++) {
+            double length = cc[i-1].distance(cc[i]);
+            parts[i] = step > 0.0 && length > step ? (int)Math.ceil(length / step) : 1;
+            size += parts[i];
+        }
+        double[] xy = new double[2*size];
+        xy[0] = cc[0].x;
+        xy[1] = cc[0].y;
+        int k = 2;
+        for (int i = 1 ; i < cc.length ; i++) {
+            double dx = (cc[i].x - cc[i-1].x) / parts[i];
+            double dy = (cc[i].y - cc[i-1].y) / parts[i];
+            for (int j = 1 ; j < parts[i] ; j++) {
+                xy[k++] = cc[i-1].x + j*dx;
+                xy[k++] = cc[i-1].y + j*dy;
+            }
+            xy[k++] = cc[i].x;
+            xy[k++] = cc[i].y;
+        }
+        return xy;
+    }
+    
+    /**
+     * Returns the discrete Fréchet distance between the point sequences p
+     * and q if it is less than or equal to maxDistance, and
+     * Double.POSITIVE_INFINITY otherwise.
+     * The coupling matrix is computed row by row, only on the band of cells
+     * which can be reached by a coupling staying under maxDistance, and the
+     * computation is abandoned as soon as a row has no such cell.
+     */
+    static double discreteFrechetDistance(double[] p, double[] q, double maxDistance) {
+        final double INF = Double.POSITIVE_INFINITY;
+        int n = p.length / 2;
+        int m = q.length / 2;
+        double[] prev = new double[m];
+        double[] curr = new double[m];
+        Arrays.fill(prev, INF);
+        Arrays.fill(curr, INF);
+        // first row : p[0] is coupled with q[0..j]
+        int lo = 0, hi = -1;
+        double acc = 0.0;
+        for (int j = 0 ; j < m ; j++) {
+            acc = Math.max(acc, distance(p, 0, q, j));
+            if (acc > maxDistance) break;
+            prev[j] = acc;
+            hi = j;
+        }
+        if (hi < 0) return INF;
+        // range of curr containing values of a previous row
+        int staleLo = 0, staleHi = -1;
+        for (int i = 1 ; i < n ; i++) {
+            if (staleHi >= staleLo) Arrays.fill(curr, staleLo, staleHi + 1, INF);
+            int newLo = -1, newHi = -1;
+            for (int j = lo ; j < m ; j++) {
+                double best = prev[j];
+                if (j > 0) best = Math.min(best, Math.min(prev[j-1], curr[j-1]));
+                if (best == INF) {
+                    // nothing can be reached on the right of the band
+                    if (j > hi) break;
+                    continue;
+                }
+                double v = Math.max(best, distance(p, i, q, j));
+                if (v > maxDistance) {
+                    if (j > hi) break;
+                    continue;
+                }
+                curr[j] = v;
+                if (newLo < 0) newLo = j;
+                newHi = j;
+            }
+            // early abandonment : no coupling can stay under maxDistance
+            if (newLo < 0) return INF;
+            double[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+            staleLo = lo;
+            staleHi = hi;
+            lo = newLo;
+            hi = newHi;
+        }
+        return hi == m - 1 ? prev[m-1] : INF;
+    }
+    
+    private static double distance(double[] p, int i, double[] q, int j) {
+        double dx = p[2*i] - q[2*j];
+        double dy = p[2*i+1] - q[2*j+1];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+    
+    /**
+     * Sets the maximum Fréchet distance accepted between two lines.
+     * @see #getMaximumDistance
+     */
+    public void setMaximumDistance(double max_dist) {
+        checkMutable();
+        if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
+        this.max_dist = max_dist;
+    }
+    
+}
@@ -0,0 +1,108 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of values computed from geometries.
+ * Geometries are compared by identity, not by {@link Geometry#equals(Object)},
+ * and the least recently used entries are evicted once the cache is full.
+ * GeometryCache is thread-safe. A value may be computed twice if two threads
+ * ask for the same geometry at the same time, but only one is kept.
+ *
+ * @author Michaël Michaud
+ */
+public class GeometryCache<V> {
+
+    private final int capacity;
+    private final Map<IdentityKey,V> map;
+
+    /**
+     * Creates a cache containing at most capacity values.
+     */
+    public GeometryCache(final int capacity) {
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<IdentityKey,V>(Math.min(capacity, 1024), 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<IdentityKey,V> eldest) {
+                return size() > GeometryCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for geometry g, computing it with function if
+     * it is not in the cache.
+     */
+    public V get(Geometry g, Function<Geometry,V> function) {
+        IdentityKey key = new IdentityKey(g);
+        V value;
+        synchronized (map) {
+            value = map.get(key);
+        }
+        if (value == null) {
+            // computation is done out of the lock
+            value = function.apply(g);
+            synchronized (map) {
+                V previous = map.putIfAbsent(key, value);
+                if (previous != null) value = previous;
+            }
+        }
+        return value;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    /**
+     * Key comparing objects by identity.
+     */
+    private static final class IdentityKey {
+
+        private final Object object;
+
+        IdentityKey(Object object) {
+            this.object = object;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey)o).object == object;
+        }
+    }
+
+}
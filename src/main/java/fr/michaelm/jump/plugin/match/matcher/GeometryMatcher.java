@@ -22,8 +22,13 @@
 
 package fr.michaelm.jump.plugin.match.matcher;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
 import com.vividsolutions.jump.feature.Feature;
+import fr.michaelm.jump.plugin.match.MatcherParameters;
+
+import java.util.List;
 
 /**
  * Interface for all simple geometry based matchers.
@@ -65,4 +70,126 @@ public abstract class GeometryMatcher extends AbstractMatcher {
          return match(source.getGeometry(), target.getGeometry(), context);
      }
 
+    /**
+     * Returns an upper bound of match(source, target, context) computed from
+     * properties of the geometries which are much cheaper to get than the
+     * match score itself (envelopes, area...).
+     * If the returned value is 0, match(source, target, context) is 0 too
+     * and the caller does not need to compute it.
+     * The default implementation returns 1.0 (no bound).
+     *
+     * @param source Geometry to match from
+     * @param target Geometry to match to
+     * @param context same context as the one used for the match method
+     *
+     * @return a double in the range [0-1] greater than or equal to the
+     * match score of source and target.
+     */
+     public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+         return 1.0;
+     }
+
+    /**
+     * Returns true if this matcher can compute the match score of a source
+     * with a large polygonal target from the tiles the target has been cut
+     * into (see {@link #matchTiles}).
+     * The default implementation returns false.
+     */
+     public boolean canMatchTiles() {
+         return false;
+     }
+
+    /**
+     * Returns match(source, target, context) computed from tiles, the
+     * polygonal pieces of target (covering target and sharing boundaries
+     * only) which are near source. Tiles farther than the maximum distance
+     * from source may be omitted.
+     * The default implementation ignores the tiles and matches the whole
+     * target.
+     *
+     * @param source Geometry to match from
+     * @param target polygonal Geometry to match to
+     * @param tiles tiles of target near source
+     * @param context same context as the one used for the match method
+     */
+     public double matchTiles(Geometry source, Geometry target,
+                              List<Geometry> tiles, Object context) throws Exception {
+         return match(source, target, context);
+     }
+
+    /**
+     * Returns the distance between the envelopes of source and target, which
+     * is a lower bound of the distance between any point of source and any
+     * point of target, or 0 if one of the geometries is empty.
+     */
+     protected static double envelopeDistance(Geometry source, Geometry target) {
+         Envelope e1 = source.getEnvelopeInternal();
+         Envelope e2 = target.getEnvelopeInternal();
+         if (e1.isNull() || e2.isNull()) return 0.0;
+         return e1.distance(e2);
+     }
+
+    /**
+     * Returns a normalized copy of g, computed once and cached if context is
+     * a {@link MatchContext}. The returned geometry must not be modified.
+     */
+     protected static Geometry normalized(Geometry g, Object context) {
+         if (context instanceof MatchContext) {
+             return ((MatchContext)context).getNormalizedGeometry(g);
+         }
+         Geometry copy = g.copy();
+         copy.normalize();
+         return copy;
+     }
+
+    /**
+     * Returns the centroid of g, cached if context is a {@link MatchContext}.
+     */
+     protected static Point centroid(Geometry g, Object context) {
+         if (context instanceof MatchContext) return ((MatchContext)context).getCentroid(g);
+         return g.getCentroid();
+     }
+
+    /**
+     * Returns the area of g, cached if context is a {@link MatchContext}.
+     */
+     protected static double area(Geometry g, Object context) {
+         if (context instanceof MatchContext) return ((MatchContext)context).getArea(g);
+         return g.getArea();
+     }
+
+    /**
+     * Returns the length of g, cached if context is a {@link MatchContext}.
+     */
+     protected static double length(Geometry g, Object context) {
+         if (context instanceof MatchContext) return ((MatchContext)context).getLength(g);
+         return g.getLength();
+     }
+
+    /**
+     * Returns the best score a distance based matcher can return for two
+     * geometries if minDistance is a lower bound of their distance.
+     */
+     protected double distanceScoreUpperBound(double minDistance) {
+         if (minDistance > max_dist) return 0.0;
+         return max_dist > 0.0 ? 1.0 - minDistance / max_dist : 1.0;
+     }
+
+    /**
+     * Returns the best score an overlap based matcher can return if
+     * maxOverlap is an upper bound of the overlapping percentage.
+     */
+     protected double overlapScoreUpperBound(double maxOverlap) {
+         if (maxOverlap <= min_overlap) return 0.0;
+         return min_overlap < 100.0 ?
+                 Math.min(1.0, (maxOverlap - min_overlap) / (100.0 - min_overlap)) : 1.0;
+     }
+
+    /**
+     * {@inheritDoc}.
+     */
+     public GeometryMatcher newInstance(MatcherParameters parameters) {
+         return (GeometryMatcher)super.newInstance(parameters);
+     }
+
 }
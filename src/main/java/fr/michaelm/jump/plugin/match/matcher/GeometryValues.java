@@ -0,0 +1,92 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+/**
+ * Values derived from a geometry (centroid, interior point, area, length
+ * and envelope), each one computed the first time it is asked for.
+ * Values may be computed twice if several threads ask for them at the same
+ * time, but they are always the same, so that GeometryValues can be used by
+ * several threads.
+ *
+ * @author Michaël Michaud
+ */
+public class GeometryValues {
+
+    private final Geometry geometry;
+    private volatile Point centroid;
+    private volatile Point interiorPoint;
+    private volatile double area = Double.NaN;
+    private volatile double length = Double.NaN;
+    private volatile Boolean simple;
+
+    public GeometryValues(Geometry geometry) {
+        this.geometry = geometry;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public Point getCentroid() {
+        Point p = centroid;
+        if (p == null) centroid = p = geometry.getCentroid();
+        return p;
+    }
+
+    public Point getInteriorPoint() {
+        Point p = interiorPoint;
+        if (p == null) interiorPoint = p = geometry.getInteriorPoint();
+        return p;
+    }
+
+    public double getArea() {
+        double a = area;
+        if (Double.isNaN(a)) area = a = geometry.getArea();
+        return a;
+    }
+
+    public double getLength() {
+        double l = length;
+        if (Double.isNaN(l)) length = l = geometry.getLength();
+        return l;
+    }
+
+    public boolean isSimple() {
+        Boolean b = simple;
+        if (b == null) simple = b = geometry.isSimple();
+        return b;
+    }
+
+    /**
+     * Returns the envelope of the geometry, which must not be modified.
+     */
+    public Envelope getEnvelope() {
+        return geometry.getEnvelopeInternal();
+    }
+
+}
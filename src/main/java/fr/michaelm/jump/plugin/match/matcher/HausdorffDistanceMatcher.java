@@ -24,6 +24,7 @@ package fr.michaelm.jump.plugin.match.matcher;
 
 import org.locationtech.jts.algorithm.distance.DiscreteHausdorffDistance;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.LineString;
@@ -55,14 +56,43 @@ public class HausdorffDistanceMatcher extends GeometryMatcher {
     public double match(Geometry source, Geometry target, Object context)
                                                               throws Exception {
         double maxDxDy = 1.414 * Math.max(maxDxDy(source), maxDxDy(target));
-        DiscreteHausdorffDistance D = new DiscreteHausdorffDistance(source, target);
         // If maxDxDy is greater than max_dist densify the geometry
-        if (max_dist < 0.75*maxDxDy) D.setDensifyFraction(max_dist/maxDxDy);
-        double dist = D.distance();
+        double densifyFraction = max_dist < 0.75*maxDxDy ? max_dist/maxDxDy : 0.0;
+        double dist;
+        if (context instanceof MatchContext && !source.isEmpty() && !target.isEmpty()) {
+            // bounded computation using cached segment indexes, stopping at
+            // the first sample point farther than max_dist
+            MatchContext matchContext = (MatchContext)context;
+            dist = BoundedHausdorffDistance.distance(
+                    source, matchContext.getSegmentIndex(source),
+                    target, matchContext.getSegmentIndex(target),
+                    densifyFraction, max_dist);
+        } else {
+            DiscreteHausdorffDistance D = new DiscreteHausdorffDistance(source, target);
+            if (densifyFraction > 0.0) D.setDensifyFraction(densifyFraction);
+            dist = D.distance();
+        }
         if (dist > max_dist) return 0.0;
         else return 1.0 - dist / max_dist;
     }
     
+    /**
+     * {@inheritDoc}.
+     * The point of source (resp. target) having the minimum x is at least at
+     * |source.minx - target.minx| from target (resp. source) if it is the
+     * smallest one : the largest difference between envelope sides is a
+     * lower bound of the Hausdorff distance.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        Envelope e1 = source.getEnvelopeInternal();
+        Envelope e2 = target.getEnvelopeInternal();
+        if (e1.isNull() || e2.isNull()) return 1.0;
+        double d = Math.max(
+                Math.max(Math.abs(e1.getMinX() - e2.getMinX()), Math.abs(e1.getMaxX() - e2.getMaxX())),
+                Math.max(Math.abs(e1.getMinY() - e2.getMinY()), Math.abs(e1.getMaxY() - e2.getMaxY())));
+        return distanceScoreUpperBound(d);
+    }
+    
     /**
      * Return the maximum length of a segment. 
      * To avoid the calculation of a SquareRoot, the max distance along one of
@@ -115,6 +145,7 @@ public class HausdorffDistanceMatcher extends GeometryMatcher {
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
         this.max_dist = max_dist;
     }
@@ -0,0 +1,209 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.algorithm.LineIntersector;
+import org.locationtech.jts.algorithm.RobustLineIntersector;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryComponentFilter;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Lineal;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+
+import java.util.Arrays;
+
+/**
+ * Measures of the intersection of two geometries (area or length) used by
+ * the overlap matchers, computed without building the intersection
+ * geometry whenever possible :
+ * <ul>
+ *     <li>disjoint envelopes give 0</li>
+ *     <li>a polygon covering the other geometry gives the measure of the
+ *     other geometry</li>
+ *     <li>the length of a line inside a polygon or along another line is
+ *     computed by clipping each of its segments with the indexed segments
+ *     of the other geometry, as long as the measured line is simple</li>
+ * </ul>
+ * Other cases are computed with OverlayNGRobust.
+ * Without MatchContext, the intersection is computed as before with
+ * Geometry.intersection.
+ *
+ * @author Michaël Michaud
+ */
+public class IntersectionMeasure {
+
+    private IntersectionMeasure() {}
+
+    /**
+     * Returns the area of the intersection of g and ref.
+     */
+    public static double area(Geometry g, Geometry ref, Object context) {
+        if (!(context instanceof MatchContext)) return g.intersection(ref).getArea();
+        if (!g.getEnvelopeInternal().intersects(ref.getEnvelopeInternal())) return 0.0;
+        if (g.getDimension() < 2 || ref.getDimension() < 2) return 0.0;
+        MatchContext matchContext = (MatchContext)context;
+        if (matchContext.getPreparedGeometry(g).covers(ref)) return matchContext.getArea(ref);
+        if (matchContext.getPreparedGeometry(ref).covers(g)) return matchContext.getArea(g);
+        if (g instanceof Polygonal && ref instanceof Polygonal) {
+            return OverlayNGRobust.overlay(g, ref, OverlayNG.INTERSECTION).getArea();
+        }
+        return g.intersection(ref).getArea();
+    }
+
+    /**
+     * Returns the length of the intersection of g and ref.
+     */
+    public static double length(Geometry g, Geometry ref, Object context) {
+        if (!(context instanceof MatchContext)) return g.intersection(ref).getLength();
+        if (!g.getEnvelopeInternal().intersects(ref.getEnvelopeInternal())) return 0.0;
+        MatchContext matchContext = (MatchContext)context;
+        // the parts of a non-simple line overlapping each other would be
+        // measured several times, while the intersection counts them once
+        if (ref instanceof Lineal && g instanceof Polygonal && matchContext.isSimple(ref)) {
+            if (matchContext.getPreparedGeometry(g).covers(ref)) return matchContext.getLength(ref);
+            return lengthInArea(ref, matchContext.getSegmentIndex(g),
+                    matchContext.getPointInAreaLocator(g));
+        }
+        if (g instanceof Lineal && ref instanceof Polygonal && matchContext.isSimple(g)) {
+            if (matchContext.getPreparedGeometry(ref).covers(g)) return matchContext.getLength(g);
+            return lengthInArea(g, matchContext.getSegmentIndex(ref),
+                    matchContext.getPointInAreaLocator(ref));
+        }
+        if (g instanceof Lineal && ref instanceof Lineal && matchContext.isSimple(ref)) {
+            return lengthAlongLine(ref, matchContext.getSegmentIndex(g));
+        }
+        return g.intersection(ref).getLength();
+    }
+
+    /**
+     * Length of line inside or on the boundary of the area whose boundary
+     * segments are indexed in boundary.
+     */
+    private static double lengthInArea(Geometry line, final SegmentIndex boundary,
+                                       final PointOnGeometryLocator locator) {
+        final LineIntersector li = new RobustLineIntersector();
+        final double[] length = new double[1];
+        line.apply((GeometryComponentFilter) component -> {
+            if (!(component instanceof LineString)) return;
+            Coordinate[] cc = ((LineString)component).getCoordinates();
+            for (int i = 1 ; i < cc.length ; i++) {
+                final LineSegment segment = new LineSegment(cc[i-1], cc[i]);
+                double segmentLength = segment.getLength();
+                if (segmentLength == 0.0) continue;
+                // parameters of the points where segment crosses the boundary
+                final double[][] params = new double[][]{new double[8]};
+                final int[] size = new int[]{2};
+                params[0][1] = 1.0;
+                boundary.querySegments(new Envelope(cc[i-1], cc[i]), s -> {
+                    li.computeIntersection(segment.p0, segment.p1, s.p0, s.p1);
+                    for (int k = 0 ; k < li.getIntersectionNum() ; k++) {
+                        if (size[0] == params[0].length) {
+                            params[0] = Arrays.copyOf(params[0], 2*size[0]);
+                        }
+                        double t = segment.projectionFactor(li.getIntersection(k));
+                        params[0][size[0]++] = Math.max(0.0, Math.min(1.0, t));
+                    }
+                });
+                double[] t = params[0];
+                Arrays.sort(t, 0, size[0]);
+                for (int k = 1 ; k < size[0] ; k++) {
+                    if (t[k] <= t[k-1]) continue;
+                    Coordinate mid = segment.pointAlong((t[k-1] + t[k]) / 2.0);
+                    if (locator.locate(mid) != Location.EXTERIOR) {
+                        length[0] += (t[k] - t[k-1]) * segmentLength;
+                    }
+                }
+            }
+        });
+        return length[0];
+    }
+
+    /**
+     * Length of the parts of line which are collinear with the segments
+     * indexed in other.
+     */
+    private static double lengthAlongLine(Geometry line, final SegmentIndex other) {
+        final LineIntersector li = new RobustLineIntersector();
+        final double[] length = new double[1];
+        line.apply((GeometryComponentFilter) component -> {
+            if (!(component instanceof LineString)) return;
+            Coordinate[] cc = ((LineString)component).getCoordinates();
+            for (int i = 1 ; i < cc.length ; i++) {
+                final LineSegment segment = new LineSegment(cc[i-1], cc[i]);
+                double segmentLength = segment.getLength();
+                if (segmentLength == 0.0) continue;
+                // intervals of segment shared with other segments
+                final double[][] intervals = new double[][]{new double[8]};
+                final int[] size = new int[1];
+                other.querySegments(new Envelope(cc[i-1], cc[i]), s -> {
+                    li.computeIntersection(segment.p0, segment.p1, s.p0, s.p1);
+                    if (li.getIntersectionNum() < 2) return;
+                    double t0 = segment.projectionFactor(li.getIntersection(0));
+                    double t1 = segment.projectionFactor(li.getIntersection(1));
+                    if (size[0] == intervals[0].length) {
+                        intervals[0] = Arrays.copyOf(intervals[0], 2*size[0]);
+                    }
+                    intervals[0][size[0]++] = Math.max(0.0, Math.min(t0, t1));
+                    intervals[0][size[0]++] = Math.min(1.0, Math.max(t0, t1));
+                });
+                length[0] += unionLength(intervals[0], size[0]) * segmentLength;
+            }
+        });
+        return length[0];
+    }
+
+    /**
+     * Length of the union of the intervals stored as (start, end) pairs in
+     * the first size values of intervals.
+     */
+    private static double unionLength(double[] intervals, int size) {
+        int n = size / 2;
+        if (n == 0) return 0.0;
+        Integer[] order = new Integer[n];
+        for (int i = 0 ; i < n ; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(intervals[2*a], intervals[2*b]));
+        double total = 0.0;
+        double start = intervals[2*order[0]];
+        double end = intervals[2*order[0]+1];
+        for (int i = 1 ; i < n ; i++) {
+            double s = intervals[2*order[i]];
+            double e = intervals[2*order[i]+1];
+            if (s > end) {
+                total += end - start;
+                start = s;
+                end = e;
+            } else if (e > end) {
+                end = e;
+            }
+        }
+        return total + end - start;
+    }
+
+}
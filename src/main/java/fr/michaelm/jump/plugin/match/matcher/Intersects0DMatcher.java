@@ -26,7 +26,8 @@ package fr.michaelm.jump.plugin.match.matcher;
 import org.locationtech.jts.geom.Geometry;
 
 /**
- * Matcher checking if geometries intersect.
+ * Matcher checking if the intersection of two geometries has dimension 0
+ * (points).
  *
  * @author Michaël Michaud
  */
@@ -46,8 +47,17 @@ public class Intersects0DMatcher extends GeometryMatcher {
      * {@inheritDoc}.
      */
     public double match(Geometry source, Geometry target, Object context) throws Exception {
-        Geometry i = source.intersection(target);
-        return ((!i.isEmpty()) && i.getDimension() == 0) ? 1.0 : 0.0;
+        // the intersection is not computed, its dimension is deduced from
+        // the DE-9IM intersection matrix
+        return IntersectsMatcher.intersectionDimension(source, target, context) == 0 ? 1.0 : 0.0;
+    }
+    
+    /**
+     * {@inheritDoc}.
+     * Intersecting geometries have intersecting envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().intersects(target.getEnvelopeInternal()) ? 1.0 : 0.0;
     }
     
 }
@@ -23,7 +23,13 @@
 package fr.michaelm.jump.plugin.match.matcher;
 
 
+import org.locationtech.jts.geom.Dimension;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.IntersectionMatrix;
+import org.locationtech.jts.geom.Location;
+
+import java.util.List;
 
 /**
  * Matcher checking if geometries intersect.
@@ -46,7 +52,104 @@ public class IntersectsMatcher extends GeometryMatcher {
      * {@inheritDoc}.
      */
     public double match(Geometry source, Geometry target, Object context) throws Exception {
-        return source.intersects(target) ? 1.0 : 0.0;
+        return intersects(source, target, context) ? 1.0 : 0.0;
+    }
+    
+    /**
+     * {@inheritDoc}.
+     */
+    public boolean canMatchTiles() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}.
+     * Tiles cover target : source intersects target if it intersects any
+     * tile.
+     */
+    public double matchTiles(Geometry source, Geometry target,
+                             List<Geometry> tiles, Object context) throws Exception {
+        for (Geometry tile : tiles) {
+            if (match(source, tile, context) > 0.0) return 1.0;
+        }
+        return 0.0;
+    }
+
+    /**
+     * {@inheritDoc}.
+     * Intersecting geometries have intersecting envelopes.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return source.getEnvelopeInternal().intersects(target.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
+
+    /**
+     * Returns true if source intersects target, using prepared geometries
+     * if context is a {@link MatchContext}.
+     */
+    static boolean intersects(Geometry source, Geometry target, Object context) {
+        if (context instanceof MatchContext) {
+            // intersects is symmetric : prepare the most complex geometry and
+            // test the simplest one against its index
+            MatchContext matchContext = (MatchContext)context;
+            if (source.getNumPoints() >= target.getNumPoints()) {
+                return matchContext.getPreparedGeometry(source).intersects(target);
+            } else {
+                return matchContext.getPreparedGeometry(target).intersects(source);
+            }
+        }
+        return source.intersects(target);
+    }
+
+    /**
+     * Returns the dimension of the intersection of source and target, or
+     * {@link Dimension#FALSE} if they do not intersect.
+     * Disjoint geometries are rejected with intersects (prepared if
+     * possible). If the most complex geometry covers the other one, the
+     * intersection is the other one. Otherwise, the dimension is read from
+     * the DE-9IM matrix as the highest dimension of the interior/boundary
+     * intersections. As relate does not support heterogeneous
+     * GeometryCollections, the dimension is computed component by component
+     * in this case (the intersection with a collection is the union of the
+     * intersections with its components).
+     */
+    static int intersectionDimension(Geometry source, Geometry target, Object context) {
+        if (!intersects(source, target, context)) return Dimension.FALSE;
+        // the intersection of a point with any geometry is a point
+        if (Math.min(source.getDimension(), target.getDimension()) == Dimension.P) {
+            return Dimension.P;
+        }
+        if (isGeometryCollection(source) || isGeometryCollection(target)) {
+            Geometry collection = isGeometryCollection(source) ? source : target;
+            Geometry other = collection == source ? target : source;
+            int dimension = Dimension.FALSE;
+            for (int i = 0 ; i < collection.getNumGeometries() ; i++) {
+                dimension = Math.max(dimension,
+                        intersectionDimension(collection.getGeometryN(i), other, context));
+                if (dimension == Dimension.A) break;
+            }
+            return dimension;
+        }
+        if (context instanceof MatchContext) {
+            MatchContext matchContext = (MatchContext)context;
+            Geometry large = source.getNumPoints() >= target.getNumPoints() ? source : target;
+            Geometry small = large == source ? target : source;
+            if (matchContext.getPreparedGeometry(large).covers(small)) {
+                return small.getDimension();
+            }
+        }
+        IntersectionMatrix im = source.relate(target);
+        return Math.max(
+                Math.max(im.get(Location.INTERIOR, Location.INTERIOR),
+                         im.get(Location.INTERIOR, Location.BOUNDARY)),
+                Math.max(im.get(Location.BOUNDARY, Location.INTERIOR),
+                         im.get(Location.BOUNDARY, Location.BOUNDARY)));
+    }
+
+    // Multi-geometries are supported by relate, but not GeometryCollections
+    // which may mix components of different dimensions
+    private static boolean isGeometryCollection(Geometry g) {
+        return g.getClass() == GeometryCollection.class;
     }
     
 }
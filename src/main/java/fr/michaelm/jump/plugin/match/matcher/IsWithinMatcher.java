@@ -24,6 +24,9 @@ package fr.michaelm.jump.plugin.match.matcher;
 
 
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygonal;
 
 /**
  * Matcher checking if geometries intersect.
@@ -46,7 +49,28 @@ public class IsWithinMatcher extends GeometryMatcher {
      */
     public double match(Geometry source, Geometry target, Object context)
                                                               throws Exception {
+        if (context instanceof MatchContext && source instanceof Point &&
+                !source.isEmpty() && target instanceof Polygonal) {
+            // a point is within a polygon iff it is in its interior : the
+            // point locator of target is built once for all the points
+            return ((MatchContext)context).getPointInAreaLocator(target)
+                    .locate(source.getCoordinate()) == Location.INTERIOR ? 1.0 : 0.0;
+        }
+        if (context instanceof MatchContext) {
+            // source is within target iff target contains source : the
+            // prepared target is reused for all the sources it is tested with
+            return ((MatchContext)context).getPreparedGeometry(target)
+                    .contains(source) ? 1.0 : 0.0;
+        }
         return source.within(target) ? 1.0 : 0.0;
     }
     
+    /**
+     * {@inheritDoc}.
+     * The envelope of source must be covered by the envelope of target.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return target.getEnvelopeInternal().covers(source.getEnvelopeInternal()) ? 1.0 : 0.0;
+    }
+    
 }
@@ -88,6 +88,7 @@ public class LevenshteinDistanceMatcher extends StringMatcher {
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
         this.max_dist = max_dist;
     }
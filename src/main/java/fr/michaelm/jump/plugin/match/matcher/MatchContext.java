@@ -0,0 +1,208 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+
+/**
+ * Context passed to the match methods by FeatureCollectionMatcher.
+ * MatchContext caches data computed from the geometries of the features
+ * being matched, so that they are computed once and reused by the following
+ * match calls involving the same geometries.
+ * Caches are bounded and thread-safe, so that the same context can be used
+ * by several threads.
+ * Matchers must return the same result with a MatchContext as without
+ * context (null).
+ *
+ * @author Michaël Michaud
+ */
+public class MatchContext {
+
+    /**
+     * Default maximum number of entries of each cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final GeometryCache<PreparedGeometry> preparedGeometries;
+    private final GeometryCache<IndexedFacetDistance> facetDistances;
+    private final GeometryCache<SegmentIndex> segmentIndexes;
+    private final GeometryCache<PointOnGeometryLocator> pointLocators;
+    private final GeometryCache<ShapeSignature> shapeSignatures;
+    private final GeometryCache<Geometry> normalizedGeometries;
+    private final GeometryCache<GeometryValues> geometryValues;
+    private final GeometryCache<Buffer> buffers;
+
+    public MatchContext() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a MatchContext whose caches hold at most cacheSize entries.
+     */
+    public MatchContext(int cacheSize) {
+        preparedGeometries = new GeometryCache<>(cacheSize);
+        facetDistances = new GeometryCache<>(cacheSize);
+        segmentIndexes = new GeometryCache<>(cacheSize);
+        pointLocators = new GeometryCache<>(cacheSize);
+        shapeSignatures = new GeometryCache<>(cacheSize);
+        normalizedGeometries = new GeometryCache<>(cacheSize);
+        geometryValues = new GeometryCache<>(cacheSize);
+        buffers = new GeometryCache<>(cacheSize);
+    }
+
+    /**
+     * Returns a PreparedGeometry for g, created once for all the match calls
+     * using g as long as it stays in the cache.
+     */
+    public PreparedGeometry getPreparedGeometry(Geometry g) {
+        return preparedGeometries.get(g, PreparedGeometryFactory::prepare);
+    }
+
+    /**
+     * Returns an IndexedFacetDistance for g, whose segment index is built
+     * once for all the distance computations involving g.
+     * Note that IndexedFacetDistance measures the distance between the
+     * linework of geometries, and ignores polygon interiors.
+     */
+    public IndexedFacetDistance getIndexedFacetDistance(Geometry g) {
+        return facetDistances.get(g, IndexedFacetDistance::new);
+    }
+
+    /**
+     * Returns the SegmentIndex of g, built once for all the match calls
+     * using g as long as it stays in the cache.
+     */
+    public SegmentIndex getSegmentIndex(Geometry g) {
+        return segmentIndexes.get(g, SegmentIndex::new);
+    }
+
+    /**
+     * Returns an IndexedPointInAreaLocator for the polygonal geometry g,
+     * built once for all the point locations in g.
+     */
+    public PointOnGeometryLocator getPointInAreaLocator(Geometry g) {
+        return pointLocators.get(g, IndexedPointInAreaLocator::new);
+    }
+
+    /**
+     * Returns the ShapeSignature of g, lineal geometries being buffered by
+     * bufferDistance. A cached signature computed with another buffer
+     * distance is not reused.
+     */
+    public ShapeSignature getShapeSignature(Geometry g, final double bufferDistance) {
+        ShapeSignature signature = shapeSignatures.get(g,
+                geom -> new ShapeSignature(getGeometryValues(geom), bufferDistance));
+        if (signature.getBufferDistance() != bufferDistance) {
+            signature = new ShapeSignature(getGeometryValues(g), bufferDistance);
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the GeometryValues of g, whose centroid, interior point, area
+     * and length are computed once for all the match calls (and links)
+     * using g as long as it stays in the cache.
+     */
+    public GeometryValues getGeometryValues(Geometry g) {
+        return geometryValues.get(g, GeometryValues::new);
+    }
+
+    public Point getCentroid(Geometry g) {
+        return getGeometryValues(g).getCentroid();
+    }
+
+    public Point getInteriorPoint(Geometry g) {
+        return getGeometryValues(g).getInteriorPoint();
+    }
+
+    public double getArea(Geometry g) {
+        return getGeometryValues(g).getArea();
+    }
+
+    public double getLength(Geometry g) {
+        return getGeometryValues(g).getLength();
+    }
+
+    public boolean isSimple(Geometry g) {
+        return getGeometryValues(g).isSimple();
+    }
+
+    /**
+     * Returns a normalized copy of g, computed once for all the match calls
+     * using g as long as it stays in the cache. The returned geometry is
+     * shared and must not be modified.
+     */
+    public Geometry getNormalizedGeometry(Geometry g) {
+        return normalizedGeometries.get(g, geom -> {
+            Geometry copy = geom.copy();
+            copy.normalize();
+            return copy;
+        });
+    }
+
+    /**
+     * Returns g.buffer(distance, quadrantSegments), computed once for all
+     * the match calls using g as long as it stays in the cache. A cached
+     * buffer computed with other parameters is not reused. The returned
+     * geometry is shared and must not be modified.
+     */
+    public Geometry getBuffer(Geometry g, final double distance, final int quadrantSegments) {
+        Buffer buffer = buffers.get(g, geom -> new Buffer(geom, distance, quadrantSegments));
+        if (buffer.distance != distance || buffer.quadrantSegments != quadrantSegments) {
+            buffer = new Buffer(g, distance, quadrantSegments);
+        }
+        return buffer.geometry;
+    }
+
+    private static final class Buffer {
+        final double distance;
+        final int quadrantSegments;
+        final Geometry geometry;
+        Buffer(Geometry g, double distance, int quadrantSegments) {
+            this.distance = distance;
+            this.quadrantSegments = quadrantSegments;
+            this.geometry = g.buffer(distance, quadrantSegments);
+        }
+    }
+
+    /**
+     * Clears all the caches of this context.
+     */
+    public void clear() {
+        preparedGeometries.clear();
+        facetDistances.clear();
+        segmentIndexes.clear();
+        pointLocators.clear();
+        shapeSignatures.clear();
+        normalizedGeometries.clear();
+        geometryValues.clear();
+        buffers.clear();
+    }
+
+}
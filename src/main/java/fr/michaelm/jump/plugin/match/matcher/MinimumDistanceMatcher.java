@@ -23,7 +23,13 @@
 package fr.michaelm.jump.plugin.match.matcher;
 
 
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.algorithm.locate.SimplePointInAreaLocator;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Polygonal;
+
+import java.util.List;
 
 /**
  * Matcher measuring minimum distance between geometries and setting a match 
@@ -36,6 +42,12 @@ public class MinimumDistanceMatcher extends GeometryMatcher {
     private static final MinimumDistanceMatcher MINIMUM_DISTANCE =
         new MinimumDistanceMatcher(1.0);
     
+    /**
+     * Minimum number of points of a geometry to compute its distance to other
+     * geometries with a cached IndexedFacetDistance.
+     */
+    public static final int INDEXED_DISTANCE_THRESHOLD = 1000;
+    
     public static MinimumDistanceMatcher instance() {
         return MINIMUM_DISTANCE;
     }
@@ -46,16 +58,100 @@ public class MinimumDistanceMatcher extends GeometryMatcher {
     
     public double match(Geometry source, Geometry target, Object context)
                                                               throws Exception {
-        double dist = source.distance(target);
+        double dist = distance(source, target, context);
         if (dist > max_dist) return 0.0;
         else return 1.0 - dist / max_dist;
     }
     
+    /**
+     * {@inheritDoc}.
+     */
+    public boolean canMatchTiles() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}.
+     * The distance to target is the minimum distance to its tiles, and tiles
+     * farther than max_dist score 0 : the score is the best tile score.
+     */
+    public double matchTiles(Geometry source, Geometry target,
+                             List<Geometry> tiles, Object context) throws Exception {
+        double score = 0.0;
+        for (Geometry tile : tiles) {
+            score = Math.max(score, match(source, tile, context));
+            if (score >= 1.0) break;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the distance between source and target. If context is a
+     * {@link MatchContext} and the largest geometry has more than
+     * {@link #INDEXED_DISTANCE_THRESHOLD} points, the distance is computed
+     * with an IndexedFacetDistance cached for the largest geometry.
+     */
+    protected double distance(Geometry source, Geometry target, Object context) {
+        if (!(context instanceof MatchContext) || source.isEmpty() || target.isEmpty()) {
+            return source.distance(target);
+        }
+        Geometry large = source.getNumPoints() >= target.getNumPoints() ? source : target;
+        Geometry small = large == source ? target : source;
+        if (large.getNumPoints() < INDEXED_DISTANCE_THRESHOLD) {
+            return source.distance(target);
+        }
+        MatchContext matchContext = (MatchContext)context;
+        double dist = matchContext.getIndexedFacetDistance(large).distance(small);
+        // facet distance ignores polygon interiors : if linework are disjoint,
+        // the distance is 0 if a component of one geometry is inside the
+        // other one
+        if (dist > 0.0) {
+            // the cached indexed locator only accepts polygonal geometries
+            if (large instanceof Polygonal && isInside(small, matchContext.getPointInAreaLocator(large))) {
+                return 0.0;
+            }
+            if (!(large instanceof Polygonal) && large.getDimension() == 2 &&
+                    isInside(small, new SimplePointInAreaLocator(large))) {
+                return 0.0;
+            }
+            if (small.getDimension() == 2 &&
+                    small.getEnvelopeInternal().intersects(large.getEnvelopeInternal()) &&
+                    isInside(large, new SimplePointInAreaLocator(small))) {
+                return 0.0;
+            }
+        }
+        return dist;
+    }
+    
+    // Returns true if a component of g is inside the area located by
+    // locator, assuming that their linework do not intersect (one point is
+    // tested for each component)
+    private static boolean isInside(Geometry g, PointOnGeometryLocator locator) {
+        for (int i = 0 ; i < g.getNumGeometries() ; i++) {
+            Geometry component = g.getGeometryN(i);
+            if (component.isEmpty()) continue;
+            if (locator.locate(component.getCoordinate()) != Location.EXTERIOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * {@inheritDoc}.
+     * The distance between the envelopes is a lower bound of the distance
+     * between the geometries.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        return distanceScoreUpperBound(envelopeDistance(source, target));
+    }
+    
     /**
      * Sets the maximum Hausdorff distance accepted between two geometries.
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
         this.max_dist = max_dist;
     }
@@ -23,8 +23,11 @@
 package fr.michaelm.jump.plugin.match.matcher;
 
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
+import java.util.List;
+
 /**
  * Matcher checking if more than half of f geometry overlaps ref geometry.
  *
@@ -44,21 +47,66 @@ public class OverlappedByMatcher extends GeometryMatcher {
     }
     
     public double match(Geometry source, Geometry target, Object context) throws Exception {
-        Geometry intersection = source.intersection(target);
         double score = 0.0;
         if (source.getDimension() == 2) {
-            score = (100.0 * intersection.getArea() / source.getArea() - min_overlap) / (100 - min_overlap);
+            double overlapArea = IntersectionMeasure.area(source, target, context);
+            score = (100.0 * overlapArea / area(source, context) - min_overlap) / (100 - min_overlap);
         } else if (source.getDimension() == 1) {
-            score = (100.0 * intersection.getLength() / source.getLength() - min_overlap) / (100 - min_overlap);
+            double overlapLength = IntersectionMeasure.length(source, target, context);
+            score = (100.0 * overlapLength / length(source, context) - min_overlap) / (100 - min_overlap);
         }
         return Math.max(0, score);
     }
     
+    /**
+     * {@inheritDoc}.
+     */
+    public boolean canMatchTiles() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}.
+     * Tiles share boundaries only : the intersection area of source with
+     * target is the sum of the intersection areas of source with the tiles.
+     * Lineal sources are matched with the whole target, as their parts
+     * lying on tile boundaries would be counted twice.
+     */
+    public double matchTiles(Geometry source, Geometry target,
+                             List<Geometry> tiles, Object context) throws Exception {
+        if (source.getDimension() != 2) return match(source, target, context);
+        double overlapArea = 0.0;
+        for (Geometry tile : tiles) overlapArea += IntersectionMeasure.area(source, tile, context);
+        double score = (100.0 * overlapArea / area(source, context) - min_overlap) / (100 - min_overlap);
+        return Math.max(0, score);
+    }
+
+    /**
+     * {@inheritDoc}.
+     * The intersection is included in the intersection of the envelopes and
+     * is empty if the envelopes are disjoint. It has no area if target has
+     * a lower dimension than source.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        Envelope e1 = target.getEnvelopeInternal();
+        Envelope e2 = source.getEnvelopeInternal();
+        if (!e1.intersects(e2)) return overlapScoreUpperBound(0.0);
+        if (target.getDimension() < source.getDimension()) return overlapScoreUpperBound(0.0);
+        if (source.getDimension() == 2) {
+            double area = area(source, context);
+            if (area > 0.0) {
+                return overlapScoreUpperBound(100.0 * e1.intersection(e2).getArea() / area);
+            }
+        }
+        return 1.0;
+    }
+    
     /**
      * Sets the minimum overlapping returning a non null match value.
      * @see #getMinimumOverlapping
      */
     public void setMinimumOverlapping(double min_overlap) {
+        checkMutable();
         if (Double.isNaN(min_overlap)) return; // Never set minOverlap to NaN
         this.min_overlap = min_overlap;
     }
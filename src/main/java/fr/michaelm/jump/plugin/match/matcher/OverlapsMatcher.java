@@ -23,8 +23,11 @@
 package fr.michaelm.jump.plugin.match.matcher;
 
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
+import java.util.List;
+
 /**
  * Matcher checking if source geometry overlaps more than xx% of target geometry.
  *
@@ -44,21 +47,64 @@ public class OverlapsMatcher extends GeometryMatcher {
     }
     
     public double match(Geometry g, Geometry ref, Object context) throws Exception {
-        Geometry intersection = g.intersection(ref);
         double score = 0.0;
         if (ref.getDimension() == 2) {
-            score = (100.0 * intersection.getArea() / ref.getArea() - min_overlap) / (100 - min_overlap);
+            double overlapArea = IntersectionMeasure.area(g, ref, context);
+            score = (100.0 * overlapArea / area(ref, context) - min_overlap) / (100 - min_overlap);
         } else if (ref.getDimension() == 1) {
-            score = (100.0 * intersection.getLength() / ref.getLength() - min_overlap) / (100 - min_overlap);
+            double overlapLength = IntersectionMeasure.length(g, ref, context);
+            score = (100.0 * overlapLength / length(ref, context) - min_overlap) / (100 - min_overlap);
         }
         return Math.max(0, score);
     }
     
+    /**
+     * {@inheritDoc}.
+     */
+    public boolean canMatchTiles() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}.
+     * Tiles share boundaries only : the intersection area of g with ref is
+     * the sum of the intersection areas of g with the tiles.
+     */
+    public double matchTiles(Geometry g, Geometry ref,
+                             List<Geometry> tiles, Object context) throws Exception {
+        if (ref.getDimension() != 2) return match(g, ref, context);
+        double overlapArea = 0.0;
+        for (Geometry tile : tiles) overlapArea += IntersectionMeasure.area(g, tile, context);
+        double score = (100.0 * overlapArea / area(ref, context) - min_overlap) / (100 - min_overlap);
+        return Math.max(0, score);
+    }
+
+    /**
+     * {@inheritDoc}.
+     * The intersection is included in the intersection of the envelopes and
+     * is empty if the envelopes are disjoint. It has no area if g has
+     * a lower dimension than ref.
+     */
+    public double scoreUpperBound(Geometry g, Geometry ref, Object context) {
+        Envelope e1 = g.getEnvelopeInternal();
+        Envelope e2 = ref.getEnvelopeInternal();
+        if (!e1.intersects(e2)) return overlapScoreUpperBound(0.0);
+        if (g.getDimension() < ref.getDimension()) return overlapScoreUpperBound(0.0);
+        if (ref.getDimension() == 2) {
+            double area = area(ref, context);
+            if (area > 0.0) {
+                return overlapScoreUpperBound(100.0 * e1.intersection(e2).getArea() / area);
+            }
+        }
+        return 1.0;
+    }
+    
     /**
      * Sets the minimum overlapping returning a non null match value.
      * @see #getMinimumOverlapping
      */
     public void setMinimumOverlapping(double min_overlap) {
+        checkMutable();
         if (Double.isNaN(min_overlap)) return; // Never set minOverlap to NaN
         this.min_overlap = min_overlap;
     }
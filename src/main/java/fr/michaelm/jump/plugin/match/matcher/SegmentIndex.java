@@ -0,0 +1,92 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryComponentFilter;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.function.Consumer;
+
+/**
+ * Spatial index of the segments (and isolated points) of a geometry, used
+ * to compute the distance from a point to the geometry linework without
+ * scanning all its segments.
+ * Distances are computed exactly as DistanceToPoint does, so that results
+ * are the same as the ones of DiscreteHausdorffDistance.
+ * A SegmentIndex is immutable once built and can be used by several threads.
+ *
+ * @author Michaël Michaud
+ */
+public class SegmentIndex {
+
+    private final STRtree tree = new STRtree();
+
+    public SegmentIndex(Geometry geometry) {
+        geometry.apply((GeometryComponentFilter) component -> {
+            if (component instanceof LineString) {
+                Coordinate[] cc = ((LineString)component).getCoordinates();
+                for (int i = 1 ; i < cc.length ; i++) {
+                    LineSegment segment = new LineSegment(cc[i-1], cc[i]);
+                    tree.insert(new Envelope(cc[i-1], cc[i]), segment);
+                }
+            } else if (component instanceof Point && !component.isEmpty()) {
+                Coordinate c = component.getCoordinate();
+                tree.insert(new Envelope(c), c);
+            }
+        });
+        tree.build();
+    }
+
+    /**
+     * Returns the distance from p to the indexed geometry if it is less than
+     * or equal to maxDistance, and Double.POSITIVE_INFINITY otherwise.
+     */
+    public double distance(final Coordinate p, double maxDistance) {
+        Envelope env = new Envelope(p);
+        env.expandBy(maxDistance);
+        final double[] min = new double[]{Double.POSITIVE_INFINITY};
+        tree.query(env, item -> {
+            double d = item instanceof LineSegment ?
+                    ((LineSegment)item).closestPoint(p).distance(p) :
+                    ((Coordinate)item).distance(p);
+            if (d < min[0]) min[0] = d;
+        });
+        return min[0] <= maxDistance ? min[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Passes the indexed segments whose envelope intersects env to consumer.
+     */
+    public void querySegments(Envelope env, final Consumer<LineSegment> consumer) {
+        tree.query(env, item -> {
+            if (item instanceof LineSegment) consumer.accept((LineSegment)item);
+        });
+    }
+
+}
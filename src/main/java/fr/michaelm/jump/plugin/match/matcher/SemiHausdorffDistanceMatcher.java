@@ -23,6 +23,7 @@
 package fr.michaelm.jump.plugin.match.matcher;
 
 import org.locationtech.jts.algorithm.distance.DiscreteHausdorffDistance;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
 
@@ -49,20 +50,47 @@ public class SemiHausdorffDistanceMatcher extends HausdorffDistanceMatcher {
      */
     public double match(Geometry source, Geometry target, Object context) 
                                                               throws Exception {
-        DiscreteHausdorffDistance D = new DiscreteHausdorffDistance(source, target);
         double maxDxDy = 1.414 * maxDxDy(source);
         // If maxDxDy is greater than max_dist densify the geometry
-        if (max_dist < 0.75*maxDxDy) D.setDensifyFraction(max_dist/maxDxDy);
-        double dist = D.orientedDistance();
+        double densifyFraction = max_dist < 0.75*maxDxDy ? max_dist/maxDxDy : 0.0;
+        double dist;
+        if (context instanceof MatchContext && !source.isEmpty() && !target.isEmpty()) {
+            // the segment index of target is built once and reused for all
+            // the sources compared with it, sampling stops at the first
+            // source point farther than max_dist
+            dist = BoundedHausdorffDistance.orientedDistance(source,
+                    ((MatchContext)context).getSegmentIndex(target),
+                    densifyFraction, max_dist);
+        } else {
+            DiscreteHausdorffDistance D = new DiscreteHausdorffDistance(source, target);
+            if (densifyFraction > 0.0) D.setDensifyFraction(densifyFraction);
+            dist = D.orientedDistance();
+        }
         if (dist > max_dist) return 0.0;
         else return 1.0 - dist / max_dist;
     }
     
+    /**
+     * {@inheritDoc}.
+     * Only source envelope sides going beyond target envelope sides give a
+     * lower bound of the oriented distance from source to target.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        Envelope e1 = source.getEnvelopeInternal();
+        Envelope e2 = target.getEnvelopeInternal();
+        if (e1.isNull() || e2.isNull()) return 1.0;
+        double d = Math.max(
+                Math.max(e2.getMinX() - e1.getMinX(), e1.getMaxX() - e2.getMaxX()),
+                Math.max(e2.getMinY() - e1.getMinY(), e1.getMaxY() - e2.getMaxY()));
+        return distanceScoreUpperBound(Math.max(0.0, d));
+    }
+    
     /**
      * Sets the maximum Hausdorff distance accepted between two geometries.
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
         this.max_dist = max_dist;
     }
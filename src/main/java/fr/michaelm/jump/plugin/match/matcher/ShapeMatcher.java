@@ -34,6 +34,10 @@ import org.locationtech.jts.geom.util.AffineTransformation;
  *   (for lineal geometries, a buffer of half the max_dist is computed first)
  * - worst ratio of intersection and both geometry area is computed
  * - matching value is evaluated from 0 (50% overlapping) to 1 (100% overlapping)
+ * When a MatchContext is used, the centroid, surface and area of each
+ * geometry are computed once (see ShapeSignature), and pairs which cannot
+ * reach min_overlap from their areas and relative envelopes are rejected
+ * before computing the intersection.
  *
  * @author Michaël Michaud
  */
@@ -53,6 +57,10 @@ public class ShapeMatcher extends GeometryMatcher {
     
     public double match(Geometry source, Geometry target, Object context) 
                                                               throws Exception {
+        if (context instanceof MatchContext) {
+            return match(getSignature(source, (MatchContext)context),
+                         getSignature(target, (MatchContext)context));
+        }
         Coordinate c1 = source.getCentroid().getCoordinate();
         Coordinate c2 = target.getCentroid().getCoordinate();
         if (c1.distance(c2) > max_dist) return 0.0; // short-circuit
@@ -68,11 +76,64 @@ public class ShapeMatcher extends GeometryMatcher {
         return (overlapping-min_overlap)/(100.0-min_overlap);
     }
     
+    private ShapeSignature getSignature(Geometry g, MatchContext context) {
+        return context.getShapeSignature(g, max_dist/2);
+    }
+    
+    /**
+     * Same as match(Geometry, Geometry, Object), using cached signatures.
+     */
+    private double match(ShapeSignature s1, ShapeSignature s2) {
+        if (signatureUpperBound(s1, s2) <= 0.0) return 0.0;
+        Coordinate c1 = s1.getCentroid();
+        Coordinate c2 = s2.getCentroid();
+        AffineTransformation trans = AffineTransformation.translationInstance(-c1.x, -c1.y);
+        trans.translate(c2.x, c2.y);
+        Geometry source = s1.getSurface().copy();
+        source.apply(trans);
+        double overlappingArea = source.intersection(s2.getSurface()).getArea();
+        double overlapping = 100.0 * Math.min(overlappingArea/s1.getArea(),
+                                              overlappingArea/s2.getArea());
+        return (overlapping-min_overlap)/(100.0-min_overlap);
+    }
+    
+    /**
+     * Upper bound of the score computed from the signatures : centroids must
+     * be within max_dist, and the overlapping area of the aligned surfaces
+     * is bounded by the smallest area and by the intersection of their
+     * relative envelopes.
+     */
+    private double signatureUpperBound(ShapeSignature s1, ShapeSignature s2) {
+        Coordinate c1 = s1.getCentroid();
+        Coordinate c2 = s2.getCentroid();
+        if (c1 == null || c2 == null || c1.distance(c2) > max_dist) return 0.0;
+        double maxArea = Math.max(s1.getArea(), s2.getArea());
+        if (!(maxArea > 0.0)) return 0.0;
+        double overlapping = 100.0 * s1.maxOverlappingArea(s2) / maxArea;
+        return overlapScoreUpperBound(overlapping);
+    }
+    
+    /**
+     * {@inheritDoc}.
+     * Centroids lie inside the envelopes, so that geometries with envelopes
+     * farther than max_dist are rejected. With a MatchContext, the bound is
+     * refined from the cached signatures.
+     */
+    public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+        if (envelopeDistance(source, target) > max_dist) return 0.0;
+        if (context instanceof MatchContext) {
+            return signatureUpperBound(getSignature(source, (MatchContext)context),
+                                       getSignature(target, (MatchContext)context));
+        }
+        return 1.0;
+    }
+    
     /**
      * Sets the maximum distance returning a non null match value.
      * @see #getMaximumDistance
      */
     public void setMaximumDistance(double max_dist) {
+        checkMutable();
         if (Double.isNaN(max_dist)) return; // Never set maxDistance to NaN
         this.max_dist = max_dist;
     }
@@ -83,6 +144,7 @@ public class ShapeMatcher extends GeometryMatcher {
      * @see #getMinimumOverlapping
      */
     public void setMinimumOverlapping(double min_overlap) {
+        checkMutable();
         if (Double.isNaN(min_overlap)) return; // Never set minOverlap to NaN
         this.min_overlap = min_overlap;
     }
@@ -0,0 +1,111 @@
+/*
+ * (C) 2021 Michaël Michaud
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * m.michael.michaud@orange.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Shape descriptors of a geometry used by ShapeMatcher : centroid, surface
+ * compared by the matcher (the geometry itself, or its buffer for lineal
+ * geometries), area of this surface and envelope of the surface relative to
+ * the centroid.
+ * Two geometries aligned on their centroids cannot overlap more than the
+ * smallest area, nor more than the intersection of their relative
+ * envelopes, so that most incompatible pairs are rejected from their
+ * signatures without computing any intersection.
+ * A ShapeSignature is immutable and can be used by several threads.
+ *
+ * @author Michaël Michaud
+ */
+public class ShapeSignature {
+
+    private final double bufferDistance;
+    private final Coordinate centroid;
+    private final Geometry surface;
+    private final double area;
+    private final Envelope relativeEnvelope;
+
+    /**
+     * Creates the signature of a geometry from its derived values, lineal
+     * geometries being buffered by bufferDistance.
+     */
+    public ShapeSignature(GeometryValues values, double bufferDistance) {
+        Geometry geometry = values.getGeometry();
+        this.bufferDistance = bufferDistance;
+        this.centroid = geometry.isEmpty() ? null : values.getCentroid().getCoordinate();
+        if (geometry.getDimension() == 1) {
+            this.surface = geometry.buffer(bufferDistance);
+            this.area = surface.getArea();
+        } else {
+            this.surface = geometry;
+            this.area = values.getArea();
+        }
+        Envelope env = surface.getEnvelopeInternal();
+        this.relativeEnvelope = centroid == null || env.isNull() ? new Envelope() :
+                new Envelope(env.getMinX() - centroid.x, env.getMaxX() - centroid.x,
+                             env.getMinY() - centroid.y, env.getMaxY() - centroid.y);
+    }
+
+    public double getBufferDistance() {
+        return bufferDistance;
+    }
+
+    /**
+     * Returns the centroid of the geometry, or null if it is empty.
+     */
+    public Coordinate getCentroid() {
+        return centroid;
+    }
+
+    /**
+     * Returns the geometry, or its buffer if it is lineal.
+     */
+    public Geometry getSurface() {
+        return surface;
+    }
+
+    public double getArea() {
+        return area;
+    }
+
+    /**
+     * Returns the envelope of the surface translated so that the centroid
+     * is at the origin.
+     */
+    public Envelope getRelativeEnvelope() {
+        return relativeEnvelope;
+    }
+
+    /**
+     * Returns an upper bound of the area shared by the surfaces of this
+     * signature and of other once their centroids are aligned.
+     */
+    public double maxOverlappingArea(ShapeSignature other) {
+        double max = Math.min(area, other.area);
+        Envelope inter = relativeEnvelope.intersection(other.relativeEnvelope);
+        return inter.isNull() ? 0.0 : Math.min(max, inter.getArea());
+    }
+
+}
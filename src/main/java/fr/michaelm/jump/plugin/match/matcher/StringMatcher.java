@@ -24,6 +24,7 @@ package fr.michaelm.jump.plugin.match.matcher;
 
 import com.vividsolutions.jump.feature.Feature;
 import fr.michaelm.jump.plugin.match.Index;
+import fr.michaelm.jump.plugin.match.MatcherParameters;
 import fr.michaelm.util.text.Rule;
 import fr.michaelm.util.text.RuleRegistry;
 import fr.michaelm.util.text.TransformationException;
@@ -94,10 +95,12 @@ public abstract class StringMatcher extends AttributeMatcher {
     }
     
     public void setSourceRule(Rule sourceRule) {
+        checkMutable();
         this.sourceRule = sourceRule;
     }
      
     public void setTargetRule(Rule targetRule) {
+        checkMutable();
         this.targetRule = targetRule;
     }
     
@@ -109,6 +112,31 @@ public abstract class StringMatcher extends AttributeMatcher {
         return targetRule;
     }
     
+    /**
+     * {@inheritDoc}.
+     */
+    public StringMatcher newInstance(MatcherParameters parameters) {
+        return (StringMatcher)super.newInstance(parameters);
+    }
+    
+    /**
+     * Collator is not shared between a prototype and its copies.
+     */
+    protected StringMatcher copy() {
+        StringMatcher matcher = (StringMatcher)super.copy();
+        matcher.collator = (Collator)collator.clone();
+        return matcher;
+    }
+    
+    /**
+     * {@inheritDoc}.
+     */
+    protected void configure(MatcherParameters parameters) {
+        super.configure(parameters);
+        setSourceRule(parameters.getSourceRule());
+        setTargetRule(parameters.getTargetRule());
+    }
+    
     /**
      * The default index for StringMatcher maps each possible target 
      * attribute value to the features having this value.
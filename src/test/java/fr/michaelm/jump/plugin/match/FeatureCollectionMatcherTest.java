@@ -0,0 +1,486 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.task.DummyTaskMonitor;
+import fr.michaelm.jump.plugin.match.matcher.CentroidDistanceMatcher;
+import fr.michaelm.jump.plugin.match.matcher.EqualsExactGeom2dMatcher;
+import fr.michaelm.jump.plugin.match.matcher.EqualsExactGeom3dMatcher;
+import fr.michaelm.jump.plugin.match.matcher.EqualsNormalizedGeom2dMatcher;
+import fr.michaelm.jump.plugin.match.matcher.EqualsNormalizedGeom3dMatcher;
+import fr.michaelm.jump.plugin.match.matcher.EqualsWithCoordinateToleranceMatcher;
+import fr.michaelm.jump.plugin.match.matcher.GeometryMatcher;
+import fr.michaelm.jump.plugin.match.matcher.HausdorffDistanceMatcher;
+import fr.michaelm.jump.plugin.match.matcher.IntersectsMatcher;
+import fr.michaelm.jump.plugin.match.matcher.IsWithinMatcher;
+import fr.michaelm.jump.plugin.match.matcher.MinimumDistanceMatcher;
+import fr.michaelm.jump.plugin.match.matcher.OverlappedByMatcher;
+import fr.michaelm.jump.plugin.match.matcher.OverlapsMatcher;
+import fr.michaelm.util.AbstractTest;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of FeatureCollectionMatcher : the specialized matching paths must
+ * return the same matches as the generic path using the STRtree index.
+ * @author Micha&euml;l Michaud
+ */
+public class FeatureCollectionMatcherTest extends AbstractTest {
+
+    public static void main(String[] args) {
+        new FeatureCollectionMatcherTest();
+    }
+
+    protected void maintest() throws Exception {
+        equalityJoinTest();
+        equalityUnionTest();
+        toleranceJoinTest();
+        pointGridTest();
+        pointInPolygonTest();
+        parallelTest();
+        streamingTest();
+        subdivisionTest();
+        nearestNeighboursTest();
+    }
+
+    // exact and normalized matchers, with duplicated, reversed and 3D
+    // geometries
+    private void equalityJoinTest() throws Exception {
+        Random random = new Random(19);
+        List<Feature> source = new ArrayList<>();
+        List<Feature> target = new ArrayList<>();
+        for (int i = 0 ; i < 200 ; i++) {
+            // groups of 4 lines on small grids, 10 units apart
+            double x0 = 10 * (i / 4 % 10);
+            double y0 = 10 * (i / 40);
+            Coordinate[] cc = new Coordinate[2 + random.nextInt(3)];
+            for (int j = 0 ; j < cc.length ; j++) {
+                cc[j] = new Coordinate(x0 + random.nextInt(3), y0 + random.nextInt(3), random.nextInt(2));
+            }
+            Geometry line = FACTORY.createLineString(cc);
+            source.add(feature(line));
+            switch (random.nextInt(4)) {
+                case 0 : target.add(feature(line.copy())); break;
+                case 1 : target.add(feature(line.reverse())); break;
+                case 2 : target.add(feature(line.getEnvelope())); break;
+                default :
+                    // first x negated : -0.0 and 0.0 are equal
+                    Geometry copy = line.copy();
+                    copy.getCoordinates()[0].x = -copy.getCoordinates()[0].x;
+                    copy.geometryChanged();
+                    target.add(feature(copy));
+            }
+        }
+        source.add(feature(FACTORY.createLineString()));
+        target.add(feature(FACTORY.createLineString()));
+        GeometryMatcher[] matchers = new GeometryMatcher[]{
+                new EqualsExactGeom2dMatcher(), new EqualsExactGeom3dMatcher(),
+                new EqualsNormalizedGeom2dMatcher(), new EqualsNormalizedGeom3dMatcher()
+        };
+        for (GeometryMatcher matcher : matchers) {
+            String name = matcher.getClass().getSimpleName();
+            assertFalse(name + " has matches", compareWithIndex(name, source, target, matcher).isEmpty());
+            compareWithIndex(name + " (same layer)", source, source, matcher);
+        }
+    }
+
+    // in N:M mode, a source may match the union of several targets : the
+    // normalized union of the two targets is equal to the source
+    private void equalityUnionTest() throws Exception {
+        List<Feature> source = features(
+                "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        List<Feature> target = features(
+                "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))",
+                "POLYGON((2 2, 4 2, 4 4, 2 4, 2 2))");
+        GeometryMatcher[] matchers = new GeometryMatcher[]{
+                new EqualsNormalizedGeom2dMatcher(), new EqualsNormalizedGeom3dMatcher()
+        };
+        for (GeometryMatcher matcher : matchers) {
+            String name = matcher.getClass().getSimpleName() + " union";
+            List<Match> matches = compareWithIndex(name, source, target, matcher, false);
+            assertEquals(name + " N:M matches", 2, matches.size());
+            assertEquals(name + " 1:N matches", 1,
+                    compareWithIndex(name, source, target, matcher, true).size());
+        }
+    }
+
+    // tolerance matcher, with coordinates on the grid cell boundaries and
+    // at exactly the tolerance distance
+    private void toleranceJoinTest() throws Exception {
+        for (double tolerance : new double[]{1.0, 0.1}) {
+            List<Feature> source = new ArrayList<>();
+            List<Feature> target = new ArrayList<>();
+            for (int i = -3 ; i <= 3 ; i++) {
+                for (int j = -3 ; j <= 3 ; j++) {
+                    double x = i * tolerance;
+                    double y = j * tolerance;
+                    source.add(feature(FACTORY.createPoint(new Coordinate(x, y))));
+                    target.add(feature(FACTORY.createPoint(new Coordinate(x + tolerance, y))));
+                    target.add(feature(FACTORY.createPoint(new Coordinate(x, y - tolerance))));
+                    target.add(feature(FACTORY.createPoint(new Coordinate(x + tolerance / 2, y + tolerance / 2))));
+                    target.add(feature(FACTORY.createPoint(new Coordinate(Math.nextUp(x + tolerance), y))));
+                    source.add(feature(FACTORY.createLineString(new Coordinate[]{
+                            new Coordinate(x, y), new Coordinate(x + 2 * tolerance, y)})));
+                    target.add(feature(FACTORY.createLineString(new Coordinate[]{
+                            new Coordinate(x + 2 * tolerance, y - tolerance), new Coordinate(x - tolerance, y)})));
+                }
+            }
+            GeometryMatcher matcher = new EqualsWithCoordinateToleranceMatcher(tolerance);
+            assertFalse("tolerance " + tolerance + " has matches",
+                    compareWithIndex("tolerance " + tolerance, source, target, matcher).isEmpty());
+            compareWithIndex("tolerance " + tolerance + " (same layer)", target, target, matcher);
+        }
+        // in N:M mode, the union of two adjacent targets matches the source
+        List<Feature> source = features(
+                "POLYGON((0 0, 5 0, 10 0, 10 10, 5 10, 0 10, 0 0))");
+        List<Feature> target = features(
+                "POLYGON((0 0, 5 0, 5 10, 0 10, 0 0))",
+                "POLYGON((5 0, 10 0, 10 10, 5 10, 5 0))");
+        GeometryMatcher matcher = new EqualsWithCoordinateToleranceMatcher(0.1);
+        assertEquals("tolerance union N:M matches", 2,
+                compareWithIndex("tolerance union", source, target, matcher, false).size());
+        assertTrue("tolerance union 1:N matches",
+                compareWithIndex("tolerance union", source, target, matcher, true).isEmpty());
+    }
+
+    // point matching with a PointGrid, whose cells are maxDistance wide for
+    // a lattice of spacing maxDistance : lattice points lie on cell borders
+    // and their neighbours are exactly at maxDistance
+    private void pointGridTest() throws Exception {
+        Random random = new Random(11);
+        for (double maxDistance : new double[]{1.0, 0.1}) {
+            List<Feature> source = new ArrayList<>();
+            List<Feature> target = new ArrayList<>();
+            for (int i = 0 ; i < 10 ; i++) {
+                for (int j = 0 ; j < 10 ; j++) {
+                    double x = i * maxDistance;
+                    double y = j * maxDistance;
+                    target.add(feature(FACTORY.createPoint(new Coordinate(x, y))));
+                    source.add(feature(FACTORY.createPoint(new Coordinate(x + maxDistance, y))));
+                    source.add(feature(FACTORY.createPoint(new Coordinate(x, y + maxDistance / 2))));
+                    source.add(feature(FACTORY.createPoint(new Coordinate(Math.nextDown(x + maxDistance), y))));
+                    source.add(feature(FACTORY.createPoint(new Coordinate(
+                            random.nextDouble() * 10 * maxDistance, random.nextDouble() * 10 * maxDistance))));
+                }
+            }
+            GeometryMatcher[] matchers = new GeometryMatcher[]{
+                    new MinimumDistanceMatcher(maxDistance), new CentroidDistanceMatcher(maxDistance)
+            };
+            for (GeometryMatcher matcher : matchers) {
+                String name = matcher.getClass().getSimpleName() + " points " + maxDistance;
+                assertFalse(name + " has matches",
+                        compareWithIndex(name, source, target, matcher, true).isEmpty());
+                compareWithIndex(name + " (same layer)", source, source, matcher, true);
+            }
+        }
+    }
+
+    // points located in polygons with a single candidate point, and in a
+    // large polygon having enough candidates to use an indexed locator ;
+    // points with integer coordinates may lie on polygon boundaries
+    private void pointInPolygonTest() throws Exception {
+        Random random = new Random(25);
+        List<Feature> target = new ArrayList<>();
+        for (Feature f : randomFeatures(random, 200)) {
+            if (f.getGeometry() instanceof Polygonal) target.add(f);
+        }
+        target.add(feature(FACTORY.createPoint(new Coordinate(50, 50)).buffer(30, 50)));
+        target.add(feature(FACTORY.createPoint(new Coordinate(150, 150)).buffer(2, 4)));
+        List<Feature> source = new ArrayList<>();
+        for (int i = 0 ; i < 500 ; i++) {
+            source.add(feature(FACTORY.createPoint(i % 2 == 0 ?
+                    new Coordinate(random.nextInt(100), random.nextInt(100)) :
+                    new Coordinate(random.nextDouble() * 100, random.nextDouble() * 100))));
+        }
+        source.add(feature(FACTORY.createPoint(new Coordinate(150, 150))));
+        GeometryMatcher matcher = new IsWithinMatcher();
+        List<Match> expected = compareWithIndex("point in polygon", source, target, matcher, true);
+        assertFalse("point in polygon has matches", expected.isEmpty());
+        assertEquals("point in polygon parallel", expected,
+                matches(source, target, matcher, true, true, Mode.PLAIN));
+        assertEquals("point in polygon spatial ordering", expected,
+                matches(source, target, matcher, true, true, Mode.SPATIAL_ORDERING));
+    }
+
+    // parallel matching must return the same matches as sequential matching,
+    // and the options of the spatial index path (spatial ordering, tree
+    // join, part indexing) the same matches as the plain index, in 1:N and
+    // N:M modes
+    private void parallelTest() throws Exception {
+        Random random = new Random(1);
+        List<Feature> source = randomFeatures(random, 200);
+        List<Feature> target = randomFeatures(random, 200);
+        source.add(0, feature(FACTORY.createPolygon()));
+        source.add(1, feature(FACTORY.createLineString()));
+        source.add(2, feature(FACTORY.createPoint()));
+        GeometryMatcher[] matchers = new GeometryMatcher[]{
+                new MinimumDistanceMatcher(5.0), new HausdorffDistanceMatcher(10.0), new OverlapsMatcher(10.0)
+        };
+        for (GeometryMatcher matcher : matchers) {
+            for (boolean singleTarget : new boolean[]{false, true}) {
+                String test = matcher.getClass().getSimpleName() + (singleTarget ? " single target" : "");
+                // the N:M step is much slower : it is tested on fewer sources
+                List<Feature> sources = singleTarget ? source : source.subList(0, 50);
+                List<Match> expected = matches(sources, target, matcher, singleTarget, false, Mode.PLAIN);
+                assertFalse(test + " has matches", expected.isEmpty());
+                for (Mode mode : Mode.values()) {
+                    String name = test + " " + mode;
+                    if (mode != Mode.PLAIN) {
+                        assertEquals(name, expected, matches(sources, target, matcher, singleTarget, false, mode));
+                    }
+                    assertEquals(name + " parallel", expected,
+                            matches(sources, target, matcher, singleTarget, true, mode));
+                }
+            }
+        }
+        // points use the PointGrid path
+        List<Feature> points = new ArrayList<>();
+        for (int i = 0 ; i < 300 ; i++) {
+            points.add(feature(FACTORY.createPoint(new Coordinate(random.nextInt(100), random.nextInt(100)))));
+        }
+        GeometryMatcher matcher = new MinimumDistanceMatcher(5.0);
+        assertEquals("points", matches(points, points, matcher, true, false, Mode.PLAIN),
+                matches(points, points, matcher, true, true, Mode.PLAIN));
+    }
+
+    // streamed matches must be the ones stored in the MatchMap in N:M mode,
+    // in sequential and in parallel mode
+    private void streamingTest() throws Exception {
+        Random random = new Random(8);
+        List<Feature> source = randomFeatures(random, 50);
+        List<Feature> target = randomFeatures(random, 200);
+        GeometryMatcher[] matchers = new GeometryMatcher[]{
+                new MinimumDistanceMatcher(5.0), new OverlapsMatcher(10.0)
+        };
+        for (GeometryMatcher matcher : matchers) {
+            List<Match> expected = matches(source, target, matcher, false);
+            for (boolean parallel : new boolean[]{false, true}) {
+                String name = matcher.getClass().getSimpleName() + " streamed" +
+                        (parallel ? " in parallel" : "");
+                FeatureCollectionMatcher fcm = new FeatureCollectionMatcher(
+                        source, target, matcher, null, new DummyTaskMonitor());
+                fcm.setParallel(parallel);
+                final List<Match> matches = new ArrayList<>();
+                fcm.matchAll(matches::add);
+                Collections.sort(matches);
+                assertFalse(name + " has matches", matches.isEmpty());
+                assertEquals(name, expected, matches);
+                assertTrue(name + " does not fill the MatchMap",
+                        fcm.getMatchMap().getAllMatches().isEmpty());
+            }
+        }
+    }
+
+    // matching sources with the tiles of large subdivided targets must give
+    // the same scores as matching them with the whole targets
+    private void subdivisionTest() throws Exception {
+        Random random = new Random(24);
+        List<Feature> target = new ArrayList<>();
+        // a disc with a hole and a star, both with many vertices
+        target.add(feature(FACTORY.createPoint(new Coordinate(50, 50)).buffer(40, 200)
+                .difference(FACTORY.createPoint(new Coordinate(50, 50)).buffer(10, 50))));
+        Coordinate[] star = new Coordinate[801];
+        for (int i = 0 ; i < 800 ; i++) {
+            double angle = 2 * Math.PI * i / 800;
+            double radius = i % 2 == 0 ? 40 : 30;
+            star[i] = new Coordinate(150 + radius * Math.cos(angle), 50 + radius * Math.sin(angle));
+        }
+        star[800] = star[0];
+        target.add(feature(FACTORY.createPolygon(star)));
+        List<Feature> source = randomFeatures(random, 200);
+        for (Feature f : source) {
+            f.getGeometry().apply((Coordinate c) -> c.x *= 2);
+            f.getGeometry().geometryChanged();
+        }
+        source.add(feature(FACTORY.createPoint(new Coordinate(150, 50)).buffer(35, 50)));
+        GeometryMatcher[] matchers = new GeometryMatcher[]{
+                new OverlapsMatcher(10.0), new OverlappedByMatcher(10.0),
+                new MinimumDistanceMatcher(10.0), new IntersectsMatcher()
+        };
+        for (GeometryMatcher matcher : matchers) {
+            String name = matcher.getClass().getSimpleName() + " subdivision";
+            List<Match> expected = subdividedMatches(source, target, matcher, 0);
+            List<Match> matches = subdividedMatches(source, target, matcher, 64);
+            assertFalse(name + " has matches", expected.isEmpty());
+            assertEquals(name + " size", expected.size(), matches.size());
+            boolean same = expected.size() == matches.size();
+            for (int i = 0 ; same && i < expected.size() ; i++) {
+                Match m1 = expected.get(i);
+                Match m2 = matches.get(i);
+                same = m1.getSource() == m2.getSource() && m1.getTarget() == m2.getTarget() &&
+                        Math.abs(m1.getScore() - m2.getScore()) < 1e-9;
+            }
+            assertTrue(name + " scores", same);
+        }
+    }
+
+    // the k nearest neighbours mode must match each source with its k
+    // nearest targets, found by an exhaustive scan. Points and short lines
+    // with random coordinates have no ties.
+    private void nearestNeighboursTest() throws Exception {
+        Random random = new Random(12);
+        List<Feature> source = new ArrayList<>();
+        List<Feature> target = new ArrayList<>();
+        for (List<Feature> features : Arrays.asList(source, target)) {
+            for (int i = 0 ; i < 150 ; i++) {
+                Coordinate c = new Coordinate(100 * random.nextDouble(), 100 * random.nextDouble());
+                features.add(feature(random.nextBoolean() ? FACTORY.createPoint(c) :
+                        FACTORY.createLineString(new Coordinate[]{c,
+                                new Coordinate(c.x + random.nextDouble(), c.y + random.nextDouble())})));
+            }
+        }
+        source.add(feature(FACTORY.createPoint()));
+        GeometryMatcher[] matchers = new GeometryMatcher[]{
+                new MinimumDistanceMatcher(10.0), new CentroidDistanceMatcher(10.0)
+        };
+        for (GeometryMatcher matcher : matchers) {
+            for (int k : new int[]{1, 3}) {
+                String name = matcher.getClass().getSimpleName() + " " + k + " nearest neighbours";
+                Set<Match> expected = nearestNeighbours(source, target, matcher, k);
+                assertFalse(name + " has matches", expected.isEmpty());
+                assertEquals(name, expected, nearestNeighbourMatches(source, target, matcher, k));
+                assertEquals(name + " (same layer)", nearestNeighbours(target, target, matcher, k),
+                        nearestNeighbourMatches(target, target, matcher, k));
+            }
+        }
+    }
+
+    private Set<Match> nearestNeighbourMatches(List<Feature> source, List<Feature> target,
+                                               GeometryMatcher matcher, int k) throws Exception {
+        FeatureCollectionMatcher fcm = new FeatureCollectionMatcher(
+                source, target, matcher, null, new DummyTaskMonitor());
+        fcm.setNearestNeighbours(k);
+        return new HashSet<>(fcm.geometryMatching(false, false).getAllMatches());
+    }
+
+    // exhaustive scan
+    private static Set<Match> nearestNeighbours(List<Feature> source, List<Feature> target,
+                                                GeometryMatcher matcher, int k) throws Exception {
+        Set<Match> matches = new HashSet<>();
+        for (Feature f1 : source) {
+            if (f1.getGeometry().isEmpty()) continue;
+            List<Feature> candidates = new ArrayList<>(target);
+            candidates.remove(f1);
+            Comparator<Feature> distance = matcher instanceof CentroidDistanceMatcher ?
+                    Comparator.comparingDouble(f2 -> f1.getGeometry().getCentroid().distance(f2.getGeometry().getCentroid())) :
+                    Comparator.comparingDouble(f2 -> f1.getGeometry().distance(f2.getGeometry()));
+            candidates.sort(distance);
+            for (Feature f2 : candidates.subList(0, k)) {
+                double score = matcher.match(f1, f2, null);
+                if (score > 0.0) matches.add(new Match(f1, f2, score));
+            }
+        }
+        return matches;
+    }
+
+    // matches sorted by source, target
+    private List<Match> subdividedMatches(List<Feature> source, List<Feature> target,
+                                          GeometryMatcher matcher, int subdivision) throws Exception {
+        FeatureCollectionMatcher fcm = new FeatureCollectionMatcher(
+                source, target, matcher, null, new DummyTaskMonitor());
+        fcm.setSubdivision(subdivision);
+        List<Match> matches = new ArrayList<>(fcm.geometryMatching(false, true).getAllMatches());
+        matches.sort((m1, m2) -> m1.getSource().getID() != m2.getSource().getID() ?
+                Integer.compare(m1.getSource().getID(), m2.getSource().getID()) :
+                Integer.compare(m1.getTarget().getID(), m2.getTarget().getID()));
+        return matches;
+    }
+
+    // returns the matches found with the spatial index in 1:N mode
+    private List<Match> compareWithIndex(String test, List<Feature> source, List<Feature> target,
+                                         GeometryMatcher matcher) throws Exception {
+        compareWithIndex(test, source, target, matcher, false);
+        return compareWithIndex(test, source, target, matcher, true);
+    }
+
+    // returns the matches found with the spatial index
+    private List<Match> compareWithIndex(String test, List<Feature> source, List<Feature> target,
+                                         GeometryMatcher matcher, boolean singleTarget) throws Exception {
+        String name = test + (singleTarget ? " single target" : "");
+        List<Match> expected = matches(source, target, indexed(matcher), singleTarget);
+        assertEquals(name, expected, matches(source, target, matcher, singleTarget));
+        for (Mode mode : Mode.values()) {
+            if (mode == Mode.PLAIN) continue;
+            assertEquals(name + " " + mode, expected,
+                    matches(source, target, indexed(matcher), singleTarget, false, mode));
+        }
+        return expected;
+    }
+
+    // options of the spatial index path
+    private enum Mode {PLAIN, SPATIAL_ORDERING, TREE_JOIN, PART_INDEXING}
+
+    private List<Match> matches(List<Feature> source, List<Feature> target,
+                                GeometryMatcher matcher, boolean singleTarget) throws Exception {
+        return matches(source, target, matcher, singleTarget, false, Mode.PLAIN);
+    }
+
+    private List<Match> matches(List<Feature> source, List<Feature> target,
+                                GeometryMatcher matcher, boolean singleTarget,
+                                boolean parallel, Mode mode) throws Exception {
+        FeatureCollectionMatcher fcm = new FeatureCollectionMatcher(
+                source, target, matcher, null, new DummyTaskMonitor());
+        fcm.setParallel(parallel);
+        fcm.setSpatialOrdering(mode == Mode.SPATIAL_ORDERING);
+        fcm.setTreeJoin(mode == Mode.TREE_JOIN);
+        fcm.setPartIndexing(mode == Mode.PART_INDEXING);
+        return new ArrayList<>(fcm.geometryMatching(false, singleTarget).getAllMatches());
+    }
+
+    // discs, pairs of discs and lines in a 100 x 100 square
+    private static List<Feature> randomFeatures(Random random, int n) {
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0 ; i < n ; i++) {
+            Coordinate c = new Coordinate(random.nextInt(100), random.nextInt(100));
+            int type = random.nextInt(5);
+            if (type < 2) {
+                features.add(feature(FACTORY.createPoint(c).buffer(1 + random.nextInt(5), 4)));
+            } else if (type == 2) {
+                // multipolygon with distant parts, indexed separately in
+                // part indexing mode
+                Coordinate c2 = new Coordinate(random.nextInt(100), random.nextInt(100));
+                features.add(feature(FACTORY.createMultiPolygon(new Polygon[]{
+                        (Polygon)FACTORY.createPoint(c).buffer(1 + random.nextInt(3), 4),
+                        (Polygon)FACTORY.createPoint(c2).buffer(1 + random.nextInt(3), 4)})
+                        .union()));
+            } else {
+                features.add(feature(FACTORY.createLineString(new Coordinate[]{c,
+                        new Coordinate(c.x + random.nextInt(11) - 5, c.y + random.nextInt(11) - 5)})));
+            }
+        }
+        return features;
+    }
+
+    // Wraps matcher in a matcher of another class, so that the
+    // FeatureCollectionMatcher uses the generic path with a spatial index
+    private static GeometryMatcher indexed(final GeometryMatcher matcher) {
+        return new GeometryMatcher() {
+            {
+                max_dist = matcher.getMaximumDistance();
+            }
+            public double match(Geometry source, Geometry target, Object context) throws Exception {
+                return matcher.match(source, target, context);
+            }
+            public double scoreUpperBound(Geometry source, Geometry target, Object context) {
+                return matcher.scoreUpperBound(source, target, context);
+            }
+        };
+    }
+
+}
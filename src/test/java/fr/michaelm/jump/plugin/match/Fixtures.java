@@ -0,0 +1,62 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geometry and feature factories shared by the tests of the matching
+ * plugin (see {@link fr.michaelm.util.AbstractTest#maintest()} about
+ * fixtures).
+ * @author Micha&euml;l Michaud
+ */
+public final class Fixtures {
+
+    public static final GeometryFactory FACTORY = new GeometryFactory();
+
+    private static final WKTReader READER = new WKTReader(FACTORY);
+
+    private static final FeatureSchema SCHEMA = new FeatureSchema();
+    static {
+        SCHEMA.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+    }
+
+    private Fixtures() {}
+
+    public static Geometry geometry(String wkt) throws ParseException {
+        return READER.read(wkt);
+    }
+
+    /**
+     * Returns a new feature without geometry. Features are numbered in
+     * creation order.
+     */
+    public static Feature feature() {
+        return new BasicFeature(SCHEMA);
+    }
+
+    public static Feature feature(Geometry geometry) {
+        Feature feature = new BasicFeature(SCHEMA);
+        feature.setGeometry(geometry);
+        return feature;
+    }
+
+    public static List<Feature> features(String... wkts) throws ParseException {
+        List<Feature> features = new ArrayList<>();
+        for (String wkt : wkts) features.add(feature(geometry(wkt)));
+        return features;
+    }
+
+}
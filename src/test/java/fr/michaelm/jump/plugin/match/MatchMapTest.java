@@ -0,0 +1,328 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match;
+
+import com.vividsolutions.jump.feature.Feature;
+import fr.michaelm.util.AbstractTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedSet;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of MatchMap and CompactMatchMap, which must behave the same way,
+ * and of the Match and MatchSet classes they use.
+ * @author Micha&euml;l Michaud
+ */
+public class MatchMapTest extends AbstractTest {
+
+    public static void main(String[] args) {
+        new MatchMapTest();
+    }
+
+    protected void maintest() throws Exception {
+        matchTest();
+        for (boolean compact : new boolean[]{false, true}) {
+            orderingTest(compact);
+            duplicateTest(compact);
+            filterTest(compact);
+            removeTest(compact);
+            matchSetTest(compact);
+        }
+        randomTest();
+    }
+
+    private AbstractMatchMap newMatchMap(boolean compact) {
+        return compact ? new CompactMatchMap() : new MatchMap();
+    }
+
+    // Features are created in ID order
+    private Feature[] features(int n) {
+        Feature[] features = new Feature[n];
+        for (int i = 0 ; i < n ; i++) features[i] = feature();
+        return features;
+    }
+
+    private static List<Match> list(Iterable<Match> matches) {
+        List<Match> list = new ArrayList<>();
+        for (Match m : matches) list.add(m);
+        return list;
+    }
+
+    private void matchTest() {
+        Feature[] s = features(2);
+        Feature[] t = features(2);
+        Match m1 = new Match(s[0], t[0], 0.5);
+        Match m2 = new Match(s[0], t[0], 0.5);
+        assertEquals("equal matches", m1, m2);
+        assertEquals("equal hashCodes", m1.hashCode(), m2.hashCode());
+        assertEquals("compareTo of equal matches", 0, m1.compareTo(m2));
+        Match zero = new Match(s[0], t[0], 0.0);
+        Match negativeZero = new Match(s[0], t[0], -0.0);
+        assertEquals("0.0 and -0.0 scores", zero, negativeZero);
+        assertEquals("0.0 and -0.0 hashCodes", zero.hashCode(), negativeZero.hashCode());
+        assertFalse("different scores", m1.equals(new Match(s[0], t[0], 0.6)));
+        assertFalse("different targets", m1.equals(new Match(s[0], t[1], 0.5)));
+        // best score first, then source ID, then target ID
+        assertTrue("best score first", new Match(s[1], t[1], 0.6).compareTo(m1) < 0);
+        assertTrue("smallest source ID first", m1.compareTo(new Match(s[1], t[0], 0.5)) < 0);
+        assertTrue("smallest target ID first", m1.compareTo(new Match(s[0], t[1], 0.5)) < 0);
+    }
+
+    private void orderingTest(boolean compact) {
+        String name = compact ? "CompactMatchMap " : "MatchMap ";
+        Feature[] s = features(3);
+        Feature[] t = features(3);
+        AbstractMatchMap map = newMatchMap(compact);
+        map.add(new Match(s[1], t[0], 0.5));
+        map.add(new Match(s[0], t[1], 0.9));
+        map.add(new Match(s[0], t[0], 0.5));
+        map.add(new Match(s[2], t[2], 0.9));
+        map.add(new Match(s[1], t[2], 0.7));
+        assertEquals(name + "all matches", Arrays.asList(
+                new Match(s[0], t[1], 0.9),
+                new Match(s[2], t[2], 0.9),
+                new Match(s[1], t[2], 0.7),
+                new Match(s[0], t[0], 0.5),
+                new Match(s[1], t[0], 0.5)), list(map.getAllMatches()));
+        assertEquals(name + "matches of s0", Arrays.asList(
+                new Match(s[0], t[1], 0.9),
+                new Match(s[0], t[0], 0.5)), list(map.getMatchesForSourceFeature(s[0])));
+        assertEquals(name + "matches of t0", Arrays.asList(
+                new Match(s[0], t[0], 0.5),
+                new Match(s[1], t[0], 0.5)), list(map.getMatchesForTargetFeature(t[0])));
+        assertEquals(name + "matches of t2", Arrays.asList(
+                new Match(s[2], t[2], 0.9),
+                new Match(s[1], t[2], 0.7)), list(map.getMatchesForTargetFeature(t[2])));
+        assertEquals(name + "features matched by s1",
+                Arrays.asList(t[2], t[0]), map.getMatchedFeaturesFromSource(s[1]));
+        assertEquals(name + "features matching t0",
+                Arrays.asList(s[0], s[1]), map.getMatchedFeaturesFromTarget(t[0]));
+        assertEquals(name + "source features",
+                new HashSet<>(Arrays.asList(s)), new HashSet<>(map.getSourceFeatures()));
+        assertEquals(name + "target features",
+                new HashSet<>(Arrays.asList(t)), new HashSet<>(map.getTargetFeatures()));
+        assertTrue(name + "no match for t1 as source", map.getMatchesForSourceFeature(t[1]).isEmpty());
+        assertEquals(name + "matches between s1 and t2",
+                Arrays.asList(new Match(s[1], t[2], 0.7)), list(map.getMatches(s[1], t[2])));
+        assertTrue(name + "no match between s2 and t0", map.getMatches(s[2], t[0]).isEmpty());
+
+        // matches added after a read are merged with the sorted ones
+        map.add(new Match(s[2], t[0], 1.0));
+        assertEquals(name + "first match after add", new Match(s[2], t[0], 1.0), map.getAllMatches().first());
+        assertEquals(name + "matches of t0 after add", Arrays.asList(
+                new Match(s[2], t[0], 1.0),
+                new Match(s[0], t[0], 0.5),
+                new Match(s[1], t[0], 0.5)), list(map.getMatchesForTargetFeature(t[0])));
+    }
+
+    private void duplicateTest(boolean compact) {
+        String name = compact ? "CompactMatchMap " : "MatchMap ";
+        Feature[] s = features(2);
+        Feature[] t = features(2);
+        AbstractMatchMap map = newMatchMap(compact);
+        map.add(new Match(s[0], t[0], 0.5));
+        map.add(new Match(s[0], t[0], 0.5));
+        map.add(new Match(s[1], t[1], 0.5));
+        assertEquals(name + "duplicate inserts", 2, map.getAllMatches().size());
+        // duplicate of an already sorted match
+        map.add(new Match(s[1], t[1], 0.5));
+        assertEquals(name + "duplicate insert after a read", 2, map.getAllMatches().size());
+        assertEquals(name + "matches of t1", 1, map.getMatchesForTargetFeature(t[1]).size());
+        // same features, different score
+        map.add(new Match(s[0], t[0], 0.8));
+        assertEquals(name + "two scores for the same pair", Arrays.asList(
+                new Match(s[0], t[0], 0.8),
+                new Match(s[0], t[0], 0.5)), list(map.getMatches(s[0], t[0])));
+        map.clear();
+        assertTrue(name + "empty after clear", map.getAllMatches().isEmpty());
+        assertTrue(name + "no source after clear", map.getSourceFeatures().isEmpty());
+        map.add(new Match(s[1], t[0], 0.3));
+        assertEquals(name + "add after clear",
+                Arrays.asList(new Match(s[1], t[0], 0.3)), list(map.getAllMatches()));
+    }
+
+    private void filterTest(boolean compact) {
+        String name = compact ? "CompactMatchMap " : "MatchMap ";
+        Feature[] s = features(3);
+        Feature[] t = features(2);
+        AbstractMatchMap map = newMatchMap(compact);
+        map.add(new Match(s[1], t[1], 0.6));
+        map.add(new Match(s[0], t[0], 0.9));
+        map.add(new Match(s[2], t[1], 0.5));
+        map.add(new Match(s[1], t[0], 0.7));
+        map.add(new Match(s[0], t[1], 0.8));
+        assertTrue(name + "filter(false,false)", map == map.filter(false, false));
+
+        AbstractMatchMap singleSource = map.filter(true, false);
+        assertEquals(name + "filter class", map.getClass(), singleSource.getClass());
+        assertEquals(name + "filter(true,false)", Arrays.asList(
+                new Match(s[0], t[0], 0.9),
+                new Match(s[0], t[1], 0.8)), list(singleSource.getAllMatches()));
+
+        assertEquals(name + "filter(false,true)", Arrays.asList(
+                new Match(s[0], t[0], 0.9),
+                new Match(s[1], t[0], 0.7),
+                new Match(s[2], t[1], 0.5)), list(map.filter(false, true).getAllMatches()));
+
+        assertEquals(name + "filter(true,true)", Arrays.asList(
+                new Match(s[0], t[0], 0.9),
+                new Match(s[1], t[1], 0.6)), list(map.filter(true, true).getAllMatches()));
+
+        // filter does not modify the filtered map
+        assertEquals(name + "size after filter", 5, map.getAllMatches().size());
+    }
+
+    private void removeTest(boolean compact) {
+        String name = compact ? "CompactMatchMap " : "MatchMap ";
+        Feature[] s = features(3);
+        Feature[] t = features(3);
+        AbstractMatchMap map = newMatchMap(compact);
+        for (int i = 0 ; i < 3 ; i++) {
+            for (int j = 0 ; j < 3 ; j++) {
+                map.add(new Match(s[i], t[j], (1 + i + 3 * j) / 10.0));
+            }
+        }
+        SortedSet<Match> before = map.getAllMatches();
+        SortedSet<Match> t0Before = map.getMatchesForTargetFeature(t[0]);
+
+        map.removeMatch(new Match(s[0], t[0], 0.1));
+        assertEquals(name + "remove one match", 8, map.getAllMatches().size());
+        assertFalse(name + "removed match", map.getAllMatches().contains(new Match(s[0], t[0], 0.1)));
+        // same features, other score
+        map.removeMatch(new Match(s[1], t[0], 0.9));
+        assertEquals(name + "remove a missing match", 8, map.getAllMatches().size());
+
+        // remove all the matches of target t1
+        map.removeMatch(new Match(s[0], t[1], 0.4), true, false);
+        // remove all the matches of source s2
+        map.removeMatch(new Match(s[2], t[2], 0.9), false, true);
+        assertEquals(name + "remove by target and by source", Arrays.asList(
+                new Match(s[1], t[2], 0.8),
+                new Match(s[0], t[2], 0.7),
+                new Match(s[1], t[0], 0.2)), list(map.getAllMatches()));
+        assertTrue(name + "no more match for t1", map.getMatchesForTargetFeature(t[1]).isEmpty());
+        assertTrue(name + "no more match for s2", map.getMatchesForSourceFeature(s[2]).isEmpty());
+        assertEquals(name + "matches of s1 after removal", Arrays.asList(
+                new Match(s[1], t[2], 0.8),
+                new Match(s[1], t[0], 0.2)), list(map.getMatchesForSourceFeature(s[1])));
+
+        // sets returned before removal are not affected
+        assertEquals(name + "all matches before removal", 9, before.size());
+        assertTrue(name + "removed match in old view", before.contains(new Match(s[0], t[0], 0.1)));
+        assertEquals(name + "matches of t0 before removal", Arrays.asList(
+                new Match(s[2], t[0], 0.3),
+                new Match(s[1], t[0], 0.2),
+                new Match(s[0], t[0], 0.1)), list(t0Before));
+
+        // a removed match can be added again
+        map.add(new Match(s[0], t[0], 0.1));
+        assertTrue(name + "match added after removal", map.getAllMatches().contains(new Match(s[0], t[0], 0.1)));
+        // removal of a match added but not yet sorted
+        map.add(new Match(s[2], t[1], 1.0));
+        map.removeMatch(new Match(s[2], t[1], 1.0));
+        assertFalse(name + "match removed before sort", map.getAllMatches().contains(new Match(s[2], t[1], 1.0)));
+        map.add(new Match(s[2], t[1], 1.0));
+        map.removeMatch(new Match(s[2], t[1], 1.0), false, true);
+        assertTrue(name + "matches of s2 removed before sort", map.getMatchesForSourceFeature(s[2]).isEmpty());
+    }
+
+    private void matchSetTest(boolean compact) {
+        String name = compact ? "CompactMatchMap " : "MatchMap ";
+        Feature[] s = features(4);
+        Feature[] t = features(1);
+        AbstractMatchMap map = newMatchMap(compact);
+        Match m1 = new Match(s[0], t[0], 0.9);
+        Match m2 = new Match(s[1], t[0], 0.7);
+        Match m3 = new Match(s[2], t[0], 0.5);
+        Match m4 = new Match(s[3], t[0], 0.3);
+        map.add(m3);
+        map.add(m1);
+        map.add(m4);
+        map.add(m2);
+        for (SortedSet<Match> set : Arrays.asList(map.getAllMatches(), map.getMatchesForTargetFeature(t[0]))) {
+            assertEquals(name + "first", m1, set.first());
+            assertEquals(name + "last", m4, set.last());
+            assertTrue(name + "contains", set.contains(new Match(s[1], t[0], 0.7)));
+            assertFalse(name + "contains another score", set.contains(new Match(s[1], t[0], 0.6)));
+            assertFalse(name + "contains another object", set.contains("m1"));
+            assertEquals(name + "headSet", Arrays.asList(m1, m2), list(set.headSet(m3)));
+            assertEquals(name + "tailSet", Arrays.asList(m3, m4), list(set.tailSet(m3)));
+            assertEquals(name + "subSet", Arrays.asList(m2, m3), list(set.subSet(m2, m4)));
+            assertEquals(name + "subSet of subSet", Arrays.asList(m3), list(set.subSet(m2, m4).tailSet(m3)));
+            // bounds which are not in the set
+            Match between = new Match(s[0], t[0], 0.6);
+            assertEquals(name + "headSet of missing match", Arrays.asList(m1, m2), list(set.headSet(between)));
+            assertTrue(name + "empty subSet", set.subSet(m3, m3).isEmpty());
+            assertNull(set.comparator());
+        }
+        try {
+            map.getMatchesForSourceFeature(t[0]).first();
+            assertTrue(name + "first of an empty set", false);
+        } catch (NoSuchElementException e) {
+            assertTrue(name + "first of an empty set", true);
+        }
+    }
+
+    // MatchMap and CompactMatchMap fed with the same random matches, with
+    // groups large enough to use the merge sort of CompactMatchMap
+    private void randomTest() {
+        Random random = new Random(1234);
+        Feature[] s = features(50);
+        Feature[] t = features(40);
+        AbstractMatchMap map = new MatchMap();
+        AbstractMatchMap compact = new CompactMatchMap();
+        List<Match> added = new ArrayList<>();
+        for (int i = 0 ; i < 3000 ; i++) {
+            // few distinct scores to test ties
+            Match m = new Match(s[random.nextInt(s.length)], t[random.nextInt(t.length)],
+                    random.nextInt(10) / 10.0);
+            map.add(m);
+            compact.add(m);
+            added.add(m);
+        }
+        checkSameMaps("random", map, compact, s, t);
+        List<Match> sorted = new ArrayList<>(new HashSet<>(added));
+        sorted.sort(null);
+        assertEquals("random : sorted distinct matches", sorted, list(compact.getAllMatches()));
+
+        for (int i = 0 ; i < 200 ; i++) {
+            Match m = added.get(random.nextInt(added.size()));
+            boolean singleSource = random.nextBoolean();
+            boolean singleTarget = random.nextBoolean();
+            map.removeMatch(m, singleSource, singleTarget);
+            compact.removeMatch(m, singleSource, singleTarget);
+            m = added.get(random.nextInt(added.size()));
+            map.removeMatch(m);
+            compact.removeMatch(m);
+        }
+        checkSameMaps("random after removal", map, compact, s, t);
+        checkSameMaps("random filter(true,false)", map.filter(true, false), compact.filter(true, false), s, t);
+        checkSameMaps("random filter(false,true)", map.filter(false, true), compact.filter(false, true), s, t);
+        checkSameMaps("random filter(true,true)", map.filter(true, true), compact.filter(true, true), s, t);
+    }
+
+    private void checkSameMaps(String test, AbstractMatchMap map1, AbstractMatchMap map2,
+                               Feature[] sources, Feature[] targets) {
+        assertEquals(test + " : all matches", list(map1.getAllMatches()), list(map2.getAllMatches()));
+        assertEquals(test + " : source features", map1.getSourceFeatures(), map2.getSourceFeatures());
+        assertEquals(test + " : target features", map1.getTargetFeatures(), map2.getTargetFeatures());
+        boolean same = true;
+        for (Feature f : sources) {
+            same &= list(map1.getMatchesForSourceFeature(f)).equals(list(map2.getMatchesForSourceFeature(f)));
+        }
+        for (Feature f : targets) {
+            same &= list(map1.getMatchesForTargetFeature(f)).equals(list(map2.getMatchesForTargetFeature(f)));
+        }
+        assertTrue(test + " : matches of each feature", same);
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import fr.michaelm.util.AbstractTest;
+import org.locationtech.jts.algorithm.distance.DiscreteHausdorffDistance;
+import org.locationtech.jts.algorithm.distance.DistanceToPoint;
+import org.locationtech.jts.algorithm.distance.PointPairDistance;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Random;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of BoundedHausdorffDistance and SegmentIndex, compared with JTS
+ * DiscreteHausdorffDistance and DistanceToPoint.
+ * @author Micha&euml;l Michaud
+ */
+public class BoundedHausdorffDistanceTest extends AbstractTest {
+
+    private static final String[] FIXTURES = new String[] {
+        "LINESTRING(0 0, 10 0, 10 10)",
+        "LINESTRING(0 1, 5 1, 9 2, 11 9)",
+        // collinear with the first line, partially overlapping
+        "LINESTRING(5 0, 15 0)",
+        // vertices lying on the segments of the first line
+        "LINESTRING(2 0, 10 5)",
+        "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))",
+        "POLYGON((1 1, 9 1, 9 9, 1 9, 1 1))",
+        "MULTIPOINT((0 0), (5 5), (10 0))",
+        "POINT(5 0)",
+        "MULTILINESTRING((0 0, 3 0), (7 0, 10 0))",
+        "GEOMETRYCOLLECTION(POINT(20 20), LINESTRING(0 0, 10 0))"
+    };
+
+    private static final double[] DENSIFY_FRACTIONS = new double[]{0.0, 0.5, 0.25, 0.1};
+
+    public static void main(String[] args) {
+        new BoundedHausdorffDistanceTest();
+    }
+
+    protected void maintest() throws Exception {
+        fixtureTest();
+        segmentIndexTest();
+        thresholdTest();
+    }
+
+    private void fixtureTest() throws Exception {
+        boolean same = true;
+        int count = 0;
+        for (String wkt0 : FIXTURES) {
+            Geometry g0 = geometry(wkt0);
+            SegmentIndex index0 = new SegmentIndex(g0);
+            for (String wkt1 : FIXTURES) {
+                Geometry g1 = geometry(wkt1);
+                SegmentIndex index1 = new SegmentIndex(g1);
+                for (double fraction : DENSIFY_FRACTIONS) {
+                    DiscreteHausdorffDistance hausdorff = new DiscreteHausdorffDistance(g0, g1);
+                    if (fraction > 0.0) hausdorff.setDensifyFraction(fraction);
+                    double expected = hausdorff.distance();
+                    double oriented = orientedDistance(g0, g1, fraction);
+                    double d = BoundedHausdorffDistance.distance(g0, index0, g1, index1, fraction, 1000.0);
+                    double o = BoundedHausdorffDistance.orientedDistance(g0, index1, fraction, 1000.0);
+                    if (d != expected || o != oriented) {
+                        same = false;
+                        print("FALSE : " + wkt0 + " / " + wkt1 + " / " + fraction +
+                                " : " + d + " <> " + expected + " or " + o + " <> " + oriented);
+                    }
+                    count++;
+                }
+            }
+        }
+        assertTrue(count + " fixture pairs", same);
+    }
+
+    // Oriented discrete Hausdorff distance from g0 to g1, with the sample
+    // points of DiscreteHausdorffDistance (its orientedDistance method
+    // returns the symmetric distance in some JTS versions)
+    private static double orientedDistance(Geometry g0, Geometry g1, double fraction) {
+        final int numSubSegs = fraction > 0.0 ? (int)Math.rint(1.0/fraction) : 1;
+        final double[] max = new double[1];
+        g0.apply(new CoordinateSequenceFilter() {
+            public void filter(CoordinateSequence seq, int i) {
+                measure(seq.getX(i), seq.getY(i));
+                if (i == 0) return;
+                double delx = (seq.getX(i) - seq.getX(i-1))/numSubSegs;
+                double dely = (seq.getY(i) - seq.getY(i-1))/numSubSegs;
+                for (int j = 1 ; j < numSubSegs ; j++) {
+                    measure(seq.getX(i-1) + j*delx, seq.getY(i-1) + j*dely);
+                }
+            }
+            private void measure(double x, double y) {
+                PointPairDistance ppd = new PointPairDistance();
+                DistanceToPoint.computeDistance(g1, new Coordinate(x, y), ppd);
+                max[0] = Math.max(max[0], ppd.getDistance());
+            }
+            public boolean isDone() {
+                return false;
+            }
+            public boolean isGeometryChanged() {
+                return false;
+            }
+        });
+        return max[0];
+    }
+
+    private void segmentIndexTest() throws Exception {
+        Random random = new Random(7);
+        boolean same = true;
+        for (String wkt : FIXTURES) {
+            Geometry g = geometry(wkt);
+            SegmentIndex index = new SegmentIndex(g);
+            for (int i = 0 ; i < 200 ; i++) {
+                // integer coordinates hit vertices and segments exactly
+                Coordinate p = i % 2 == 0 ?
+                        new Coordinate(random.nextInt(25) - 5, random.nextInt(25) - 5) :
+                        new Coordinate(random.nextDouble() * 30 - 5, random.nextDouble() * 30 - 5);
+                PointPairDistance ppd = new PointPairDistance();
+                DistanceToPoint.computeDistance(g, p, ppd);
+                same &= index.distance(p, 1000.0) == ppd.getDistance();
+            }
+        }
+        assertTrue("SegmentIndex distances", same);
+        assertEquals("point on a segment", 0.0,
+                new SegmentIndex(geometry(FIXTURES[0])).distance(new Coordinate(10, 3), 0.0));
+        assertEquals("empty geometry", Double.POSITIVE_INFINITY,
+                new SegmentIndex(FACTORY.createLineString()).distance(new Coordinate(0, 0), 1000.0));
+    }
+
+    // Distances equal to the maximum distance are returned, greater ones are
+    // replaced by infinity
+    private void thresholdTest() throws Exception {
+        Geometry g0 = geometry("LINESTRING(0 0, 10 0)");
+        Geometry g1 = geometry("LINESTRING(0 0, 5 3, 10 0)");
+        SegmentIndex index0 = new SegmentIndex(g0);
+        SegmentIndex index1 = new SegmentIndex(g1);
+        assertEquals("oracle", 3.0, DiscreteHausdorffDistance.distance(g0, g1));
+        assertEquals("max = distance", 3.0,
+                BoundedHausdorffDistance.distance(g0, index0, g1, index1, 0.0, 3.0));
+        assertEquals("max < distance", Double.POSITIVE_INFINITY,
+                BoundedHausdorffDistance.distance(g0, index0, g1, index1, 0.0, Math.nextDown(3.0)));
+        // g0 vertices are on g1 : only the other direction exceeds max
+        assertEquals("oriented distance under max", 0.0,
+                BoundedHausdorffDistance.orientedDistance(g0, index1, 0.0, 1.0));
+        assertEquals("oriented distance over max", Double.POSITIVE_INFINITY,
+                BoundedHausdorffDistance.orientedDistance(g1, index0, 0.0, 1.0));
+        // with densification, points of g0 are measured too
+        double densified = orientedDistance(g0, g1, 0.25);
+        assertTrue("densified points are farther than vertices", densified > 0.0);
+        assertEquals("densified oriented distance", densified,
+                BoundedHausdorffDistance.orientedDistance(g0, index1, 0.25, 1000.0));
+
+        // HausdorffDistanceMatcher gives the same score with a MatchContext
+        // (bounded computation) and without (DiscreteHausdorffDistance)
+        boolean same = true;
+        for (String wkt0 : FIXTURES) {
+            for (String wkt1 : FIXTURES) {
+                Geometry s = geometry(wkt0);
+                Geometry t = geometry(wkt1);
+                for (double max : new double[]{0.5, 2.0, 5.0, 20.0}) {
+                    HausdorffDistanceMatcher matcher = new HausdorffDistanceMatcher(max);
+                    SemiHausdorffDistanceMatcher semi = new SemiHausdorffDistanceMatcher(max);
+                    MatchContext context = new MatchContext();
+                    same &= matcher.match(s, t, null) == matcher.match(s, t, context);
+                    same &= semi.match(s, t, null) == semi.match(s, t, context);
+                }
+            }
+        }
+        assertTrue("same matcher scores with and without context", same);
+    }
+
+}
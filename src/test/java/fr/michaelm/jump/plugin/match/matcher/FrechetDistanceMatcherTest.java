@@ -0,0 +1,136 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import fr.michaelm.util.AbstractTest;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.Random;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of the banded discrete Fréchet distance of FrechetDistanceMatcher,
+ * compared with the full coupling matrix of the definition (Eiter and
+ * Mannila), which is also what JTS DiscreteFrechetDistance computes.
+ * @author Micha&euml;l Michaud
+ */
+public class FrechetDistanceMatcherTest extends AbstractTest {
+
+    public static void main(String[] args) {
+        new FrechetDistanceMatcherTest();
+    }
+
+    protected void maintest() throws Exception {
+        fixtureTest();
+        randomTest();
+        thresholdTest();
+        matchTest();
+    }
+
+    private void fixtureTest() {
+        // same points
+        double[] p = {0,0, 1,0, 2,0, 3,0};
+        checkDistance("same line", p, p.clone());
+        // collinear, with a different number of points
+        checkDistance("collinear", p, new double[]{0,0, 3,0});
+        // opposite direction : the Fréchet distance is the line length
+        checkDistance("reversed", p, new double[]{3,0, 2,0, 1,0, 0,0});
+        // parallel lines
+        checkDistance("parallel", p, new double[]{0,1, 1,1, 2,1, 3,1});
+        // back and forth along the other line
+        checkDistance("back and forth", p, new double[]{0,0, 2,0, 1,0, 3,0});
+        // single points
+        checkDistance("single points", new double[]{0,0}, new double[]{3,4});
+        checkDistance("point and line", new double[]{1,1}, p);
+    }
+
+    private void randomTest() {
+        Random random = new Random(42);
+        boolean same = true;
+        for (int i = 0 ; i < 500 ; i++) {
+            double[] p = randomWalk(random, 1 + random.nextInt(15));
+            double[] q = randomWalk(random, 1 + random.nextInt(15));
+            double expected = referenceDistance(p, q);
+            same &= FrechetDistanceMatcher.discreteFrechetDistance(p, q, Double.MAX_VALUE) == expected;
+            same &= FrechetDistanceMatcher.discreteFrechetDistance(p, q, 2 * expected) == expected;
+            same &= FrechetDistanceMatcher.discreteFrechetDistance(p, q, expected) == expected;
+            if (expected > 0.0) {
+                same &= FrechetDistanceMatcher.discreteFrechetDistance(p, q, 0.999 * expected) == Double.POSITIVE_INFINITY;
+            }
+        }
+        assertTrue("500 random lines", same);
+    }
+
+    // The computation is abandoned as soon as the distance exceeds the
+    // threshold, but a distance equal to the threshold is returned
+    private void thresholdTest() {
+        double[] p = {0,0, 1,0, 2,0, 3,0, 4,0};
+        double[] q = {0,0, 1,0, 2,2, 3,0, 4,0};
+        checkDistance("peak", p, q);
+        assertEquals("threshold = distance", 2.0,
+                FrechetDistanceMatcher.discreteFrechetDistance(p, q, 2.0));
+        assertEquals("threshold < distance", Double.POSITIVE_INFINITY,
+                FrechetDistanceMatcher.discreteFrechetDistance(p, q, Math.nextDown(2.0)));
+        // the first points are too far from each other
+        assertEquals("first row abandonment", Double.POSITIVE_INFINITY,
+                FrechetDistanceMatcher.discreteFrechetDistance(p, new double[]{0,5, 4,0}, 4.0));
+        // only the end of the lines is too far
+        assertEquals("last row abandonment", Double.POSITIVE_INFINITY,
+                FrechetDistanceMatcher.discreteFrechetDistance(p, new double[]{0,0, 4,3}, 2.5));
+    }
+
+    private void matchTest() throws Exception {
+        Geometry line = geometry("LINESTRING(0 0, 10 0, 20 0)");
+        Geometry reversed = line.reverse();
+        Geometry shifted = geometry("LINESTRING(0 1, 20 1)");
+        FrechetDistanceMatcher matcher = new FrechetDistanceMatcher(2.0);
+        // lines are densified with a step of max_dist / 2
+        assertEquals("shifted line", 0.5, matcher.match(line, shifted, null), 1e-12);
+        assertEquals("shifted line (context)", 0.5, matcher.match(line, shifted, new MatchContext()), 1e-12);
+        assertEquals("reversed line", 0.0, matcher.match(line, reversed, null));
+        assertEquals("reversed line is Hausdorff-equal", 1.0,
+                new HausdorffDistanceMatcher(2.0).match(line, reversed, null), 1e-12);
+        assertEquals("upper bound of reversed line", 0.0, matcher.scoreUpperBound(line, reversed, null));
+        assertEquals("distance = max_dist", 0.0, new FrechetDistanceMatcher(1.0).match(line, shifted, null));
+        assertEquals("polygon", 0.0, matcher.match(line, line.buffer(1.0), null));
+    }
+
+    private void checkDistance(String test, double[] p, double[] q) {
+        double expected = referenceDistance(p, q);
+        assertEquals(test, expected, FrechetDistanceMatcher.discreteFrechetDistance(p, q, Double.MAX_VALUE));
+        assertEquals(test + " (reverse)", expected, FrechetDistanceMatcher.discreteFrechetDistance(q, p, Double.MAX_VALUE));
+        assertEquals(test + " (threshold)", expected, FrechetDistanceMatcher.discreteFrechetDistance(p, q, expected));
+    }
+
+    // Full coupling matrix
+    private static double referenceDistance(double[] p, double[] q) {
+        int n = p.length / 2;
+        int m = q.length / 2;
+        double[][] ca = new double[n][m];
+        for (int i = 0 ; i < n ; i++) {
+            for (int j = 0 ; j < m ; j++) {
+                double dx = p[2*i] - q[2*j];
+                double dy = p[2*i+1] - q[2*j+1];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (i == 0 && j == 0) ca[i][j] = d;
+                else if (i == 0) ca[i][j] = Math.max(ca[i][j-1], d);
+                else if (j == 0) ca[i][j] = Math.max(ca[i-1][j], d);
+                else ca[i][j] = Math.max(Math.min(ca[i-1][j], Math.min(ca[i-1][j-1], ca[i][j-1])), d);
+            }
+        }
+        return ca[n-1][m-1];
+    }
+
+    private static double[] randomWalk(Random random, int n) {
+        double[] xy = new double[2*n];
+        for (int i = 1 ; i < n ; i++) {
+            xy[2*i] = xy[2*i-2] + random.nextInt(5) - 1;
+            xy[2*i+1] = xy[2*i-1] + random.nextInt(5) - 2;
+        }
+        return xy;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import fr.michaelm.util.AbstractTest;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of IntersectionMeasure, compared with the measure of the
+ * intersection computed by Geometry.intersection.
+ * @author Micha&euml;l Michaud
+ */
+public class IntersectionMeasureTest extends AbstractTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    public static void main(String[] args) {
+        new IntersectionMeasureTest();
+    }
+
+    protected void maintest() throws Exception {
+        lengthInAreaTest();
+        lengthAlongLineTest();
+        areaTest();
+        randomTest();
+    }
+
+    private void lengthInAreaTest() throws Exception {
+        Geometry square = geometry("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))");
+        checkLength("crossing line", "LINESTRING(-5 5, 15 5)", square);
+        checkLength("line inside", "LINESTRING(1 1, 3 2, 2 3)", square);
+        checkLength("line outside", "LINESTRING(11 0, 11 10)", square);
+        // segments lying on the boundary are part of the intersection
+        checkLength("line on the shell", "LINESTRING(-5 0, 5 0)", square);
+        checkLength("line along the hole", "LINESTRING(4 2, 4 8)", square);
+        checkLength("line on the shell corner", "LINESTRING(5 0, 10 0, 10 5)", square);
+        checkLength("line touching a vertex", "LINESTRING(10 10, 15 15)", square);
+        checkLength("line crossing a vertex", "LINESTRING(-5 -5, 15 15)", square);
+        checkLength("multiline", "MULTILINESTRING((-5 5, 15 5), (5 -5, 5 15))", square);
+        // overlapping parts are measured once, as in the intersection
+        checkLength("line doubling back", "LINESTRING(-5 1, 3 1, 2 1)", square);
+        Geometry multiPolygon = geometry("MULTIPOLYGON(((0 0, 4 0, 4 4, 0 4, 0 0)), ((4 0, 8 0, 8 4, 4 4, 4 0)))");
+        checkLength("line along adjacent polygons", "LINESTRING(4 -2, 4 6)", multiPolygon);
+        checkLength("line across adjacent polygons", "LINESTRING(-2 2, 10 2)", multiPolygon);
+    }
+
+    private void lengthAlongLineTest() throws Exception {
+        Geometry line = geometry("LINESTRING(0 0, 10 0, 10 10)");
+        checkLength("overlapping line", "LINESTRING(5 0, 15 0)", line);
+        checkLength("reversed line", "LINESTRING(10 10, 10 0, 0 0)", line);
+        checkLength("sub-line", "LINESTRING(2 0, 3 0)", line);
+        checkLength("crossing line", "LINESTRING(5 -5, 5 5)", line);
+        checkLength("line around a vertex", "LINESTRING(8 0, 10 0, 10 2)", line);
+        checkLength("parallel line", "LINESTRING(0 1, 10 1)", line);
+        checkLength("segments covering the same part", "MULTILINESTRING((0 0, 6 0), (4 0, 10 0))", geometry("LINESTRING(2 0, 8 0)"));
+    }
+
+    private void areaTest() throws Exception {
+        Geometry square = geometry("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        checkArea("overlapping square", "POLYGON((5 5, 15 5, 15 15, 5 15, 5 5))", square);
+        checkArea("covered square", "POLYGON((2 2, 4 2, 4 4, 2 4, 2 2))", square);
+        checkArea("adjacent square", "POLYGON((10 0, 20 0, 20 10, 10 10, 10 0))", square);
+        checkArea("disjoint square", "POLYGON((20 0, 30 0, 30 10, 20 10, 20 0))", square);
+        checkArea("polygon with hole", "POLYGON((-5 -5, 15 -5, 15 15, -5 15, -5 -5), (2 2, 8 2, 8 8, 2 8, 2 2))", square);
+        checkArea("line", "LINESTRING(0 0, 10 10)", square);
+    }
+
+    // Random lines and polygons on an integer grid, producing many
+    // collinear segments and vertices on segments
+    private void randomTest() throws Exception {
+        Random random = new Random(5);
+        List<Geometry> polygons = new ArrayList<>();
+        List<Geometry> lines = new ArrayList<>();
+        for (int i = 0 ; i < 30 ; i++) {
+            polygons.add(randomPolygon(random));
+            lines.add(randomLine(random));
+        }
+        boolean same = true;
+        for (Geometry polygon : polygons) {
+            for (Geometry line : lines) {
+                same &= sameLength(line, polygon) & sameLength(polygon, line);
+            }
+            for (Geometry other : polygons) {
+                same &= sameArea(polygon, other);
+            }
+        }
+        for (Geometry line : lines) {
+            for (Geometry other : lines) {
+                same &= sameLength(line, other);
+            }
+        }
+        assertTrue("random geometries", same);
+    }
+
+    private void checkLength(String test, String wkt, Geometry ref) throws Exception {
+        Geometry g = geometry(wkt);
+        assertEquals(test, g.intersection(ref).getLength(),
+                IntersectionMeasure.length(g, ref, new MatchContext()), TOLERANCE);
+        assertEquals(test + " (reverse)", ref.intersection(g).getLength(),
+                IntersectionMeasure.length(ref, g, new MatchContext()), TOLERANCE);
+    }
+
+    private void checkArea(String test, String wkt, Geometry ref) throws Exception {
+        Geometry g = geometry(wkt);
+        assertEquals(test, g.intersection(ref).getArea(),
+                IntersectionMeasure.area(g, ref, new MatchContext()), TOLERANCE);
+        assertEquals(test + " (reverse)", ref.intersection(g).getArea(),
+                IntersectionMeasure.area(ref, g, new MatchContext()), TOLERANCE);
+    }
+
+    private boolean sameLength(Geometry g, Geometry ref) {
+        double expected = g.intersection(ref).getLength();
+        double length = IntersectionMeasure.length(g, ref, new MatchContext());
+        if (Math.abs(expected - length) <= TOLERANCE) return true;
+        print("FALSE : length " + g + " / " + ref + " : " + length + " <> " + expected);
+        return false;
+    }
+
+    private boolean sameArea(Geometry g, Geometry ref) {
+        double expected = g.intersection(ref).getArea();
+        double area = IntersectionMeasure.area(g, ref, new MatchContext());
+        if (Math.abs(expected - area) <= TOLERANCE) return true;
+        print("FALSE : area " + g + " / " + ref + " : " + area + " <> " + expected);
+        return false;
+    }
+
+    // rectangle or triangle
+    private static Geometry randomPolygon(Random random) {
+        int x = random.nextInt(8);
+        int y = random.nextInt(8);
+        int w = 1 + random.nextInt(5);
+        int h = 1 + random.nextInt(5);
+        Coordinate[] cc = random.nextBoolean() ?
+                new Coordinate[]{new Coordinate(x, y), new Coordinate(x+w, y),
+                        new Coordinate(x+w, y+h), new Coordinate(x, y+h), new Coordinate(x, y)} :
+                new Coordinate[]{new Coordinate(x, y), new Coordinate(x+w, y),
+                        new Coordinate(x, y+h), new Coordinate(x, y)};
+        return FACTORY.createPolygon(cc);
+    }
+
+    // line with strictly increasing x or y, which cannot overlap itself
+    private static Geometry randomLine(Random random) {
+        int n = 2 + random.nextInt(4);
+        boolean alongX = random.nextBoolean();
+        Coordinate[] cc = new Coordinate[n];
+        int u = random.nextInt(4);
+        for (int i = 0 ; i < n ; i++) {
+            int v = random.nextInt(10);
+            cc[i] = alongX ? new Coordinate(u, v) : new Coordinate(v, u);
+            u += 1 + random.nextInt(3);
+        }
+        return FACTORY.createLineString(cc);
+    }
+
+}
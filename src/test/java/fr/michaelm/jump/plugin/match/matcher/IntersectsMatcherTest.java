@@ -0,0 +1,90 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import fr.michaelm.util.AbstractTest;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of the intersection dimension used by Intersects0D/1D/2D matchers,
+ * with and without a MatchContext.
+ * @author Micha&euml;l Michaud
+ */
+public class IntersectsMatcherTest extends AbstractTest {
+
+    public static void main(String[] args) {
+        new IntersectsMatcherTest();
+    }
+
+    protected void maintest() throws Exception {
+        heterogeneousCollectionTest(null);
+        heterogeneousCollectionTest(new MatchContext());
+        coveredGeometryTest(null);
+        coveredGeometryTest(new MatchContext());
+    }
+
+    // A collection mixing a point, a line and a polygon, compared with
+    // polygons intersecting only one of its components
+    private void heterogeneousCollectionTest(MatchContext context) throws Exception {
+        Geometry collection = geometry("GEOMETRYCOLLECTION(POINT(5 5), " +
+                "LINESTRING(20 0, 20 10), POLYGON((30 0, 40 0, 40 10, 30 10, 30 0)))");
+        Geometry aroundPoint = geometry("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        Geometry aroundLine = geometry("POLYGON((15 0, 25 0, 25 10, 15 10, 15 0))");
+        Geometry overPolygon = geometry("POLYGON((35 0, 45 0, 45 10, 35 10, 35 0))");
+        Geometry disjoint = geometry("POLYGON((100 0, 110 0, 110 10, 100 10, 100 0))");
+        String c = context == null ? " (no context)" : " (context)";
+
+        checkDimension("point component" + c, collection, aroundPoint, context, 0);
+        checkDimension("line component" + c, collection, aroundLine, context, 1);
+        checkDimension("polygon component" + c, collection, overPolygon, context, 2);
+        checkDimension("disjoint" + c, collection, disjoint, context, -1);
+
+        // mixed collection on both sides
+        Geometry other = geometry("GEOMETRYCOLLECTION(POINT(50 50), " +
+                "LINESTRING(20 -5, 20 5))");
+        checkDimension("two collections" + c, collection, other, context, 1);
+    }
+
+    private void coveredGeometryTest(MatchContext context) throws Exception {
+        Geometry polygon = geometry("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        Geometry inside = geometry("LINESTRING(1 1, 2 2, 3 1, 4 2)");
+        Geometry onBoundary = geometry("LINESTRING(0 0, 5 0)");
+        Geometry crossing = geometry("LINESTRING(5 5, 15 5)");
+        Geometry touching = geometry("POLYGON((10 10, 20 10, 20 20, 10 20, 10 10))");
+        Geometry adjacent = geometry("POLYGON((10 0, 20 0, 20 10, 10 10, 10 0))");
+        String c = context == null ? " (no context)" : " (context)";
+
+        checkDimension("covered line" + c, polygon, inside, context, 1);
+        checkDimension("line on boundary" + c, polygon, onBoundary, context, 1);
+        checkDimension("crossing line" + c, polygon, crossing, context, 1);
+        checkDimension("touching polygons" + c, polygon, touching, context, 0);
+        checkDimension("adjacent polygons" + c, polygon, adjacent, context, 1);
+        checkDimension("same polygon" + c, polygon, polygon.copy(), context, 2);
+    }
+
+    // Checks intersectionDimension and the three Intersects<n>D matchers in
+    // both directions
+    private void checkDimension(String test, Geometry g1, Geometry g2,
+                                MatchContext context, int dimension) throws Exception {
+        assertEquals(test, dimension, IntersectsMatcher.intersectionDimension(g1, g2, context));
+        assertEquals(test + " (reverse)", dimension, IntersectsMatcher.intersectionDimension(g2, g1, context));
+        assertEquals(test + " 0D", dimension == 0 ? 1.0 : 0.0,
+                Intersects0DMatcher.instance().match(g1, g2, context));
+        assertEquals(test + " 1D", dimension == 1 ? 1.0 : 0.0,
+                Intersects1DMatcher.instance().match(g1, g2, context));
+        assertEquals(test + " 2D", dimension == 2 ? 1.0 : 0.0,
+                Intersects2DMatcher.instance().match(g1, g2, context));
+        // JTS overlay does not accept a GeometryCollection as argument
+        if (g2.getClass() != GeometryCollection.class) {
+            Geometry intersection = g1.intersection(g2);
+            assertEquals(test + " intersection", dimension,
+                    intersection.isEmpty() ? -1 : intersection.getDimension());
+        }
+    }
+
+}
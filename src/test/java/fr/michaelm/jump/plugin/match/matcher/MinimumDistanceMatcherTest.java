@@ -0,0 +1,52 @@
+/*
+ * (C) 2021 michael.michaud@free.fr
+ */
+
+package fr.michaelm.jump.plugin.match.matcher;
+
+import fr.michaelm.util.AbstractTest;
+import org.locationtech.jts.geom.Geometry;
+
+import static fr.michaelm.jump.plugin.match.Fixtures.*;
+
+/**
+ * Tests of MinimumDistanceMatcher : scores computed with a MatchContext
+ * (indexed distance and point location for large geometries) must be the
+ * same as without context.
+ * @author Micha&euml;l Michaud
+ */
+public class MinimumDistanceMatcherTest extends AbstractTest {
+
+    public static void main(String[] args) {
+        new MinimumDistanceMatcherTest();
+    }
+
+    protected void maintest() throws Exception {
+        // disc of more than INDEXED_DISTANCE_THRESHOLD points
+        Geometry disc = geometry("POINT(0 0)").buffer(100, 300);
+        assertTrue("large disc", disc.getNumPoints() >= MinimumDistanceMatcher.INDEXED_DISTANCE_THRESHOLD);
+        Geometry line = geometry("LINESTRING(200 0, 300 0)");
+        // polygon plus line : dimension 2, but not Polygonal
+        Geometry collection = FACTORY.createGeometryCollection(new Geometry[]{disc, line});
+        String[] others = new String[]{
+                "POINT(10 10)",
+                "POINT(150 0)",
+                "POINT(250 5)",
+                "LINESTRING(-10 -10, 10 10)",
+                "POLYGON((-500 -500, 500 -500, 500 500, -500 500, -500 -500))",
+                "POLYGON((105 -5, 110 -5, 110 5, 105 5, 105 -5))"
+        };
+        MinimumDistanceMatcher matcher = new MinimumDistanceMatcher(20.0);
+        for (Geometry large : new Geometry[]{disc, collection}) {
+            for (String wkt : others) {
+                Geometry other = geometry(wkt);
+                String name = large.getGeometryType() + " / " + wkt;
+                assertEquals(name, matcher.match(large, other, null),
+                        matcher.match(large, other, new MatchContext()), 1e-12);
+                assertEquals(name + " (reverse)", matcher.match(other, large, null),
+                        matcher.match(other, large, new MatchContext()), 1e-12);
+            }
+        }
+    }
+
+}
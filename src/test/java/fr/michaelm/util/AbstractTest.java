@@ -103,6 +103,11 @@ abstract public class AbstractTest {
     }
 
 
+    /**
+     * Runs the tests. maintest is called by the constructor of AbstractTest,
+     * before the instance fields of the subclass are initialized : fixtures
+     * used by maintest must be static or created by maintest itself.
+     */
     abstract protected void maintest() throws Exception;
     
     protected void setUp() {}